@@ -0,0 +1,55 @@
+package android.content;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+import java.io.File;
+
+/**
+ * Files go to a directory of the benchmark's choosing. There are no system
+ * services and no sticky broadcasts.
+ */
+public class Context {
+
+    public static final String CONNECTIVITY_SERVICE = "connectivity";
+
+    private final File _filesDir;
+    private final String _packageName;
+
+    public Context(File filesDir, String packageName) {
+        _filesDir = filesDir;
+        _packageName = packageName;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public File getFilesDir() {
+        _filesDir.mkdirs();
+        return _filesDir;
+    }
+
+    public String getPackageName() {
+        return _packageName;
+    }
+
+    public PackageManager getPackageManager() {
+        return new PackageManager();
+    }
+
+    public ApplicationInfo getApplicationInfo() {
+        return new ApplicationInfo(_packageName);
+    }
+
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+}
@@ -0,0 +1,23 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Intent {
+
+    public static final String ACTION_BATTERY_CHANGED = "android.intent.action.BATTERY_CHANGED";
+    public static final String ACTION_BATTERY_LOW = "android.intent.action.BATTERY_LOW";
+    public static final String ACTION_BATTERY_OKAY = "android.intent.action.BATTERY_OKAY";
+
+    private final Map<String, Integer> _extras = new HashMap<String, Integer>();
+
+    public Intent putExtra(String name, int value) {
+        _extras.put(name, value);
+        return this;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Integer value = _extras.get(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,17 @@
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IntentFilter {
+
+    private final List<String> _actions = new ArrayList<String>();
+
+    public IntentFilter(String action) {
+        _actions.add(action);
+    }
+
+    public void addAction(String action) {
+        _actions.add(action);
+    }
+}
@@ -0,0 +1,14 @@
+package android.content.pm;
+
+public class ApplicationInfo {
+
+    public String packageName;
+
+    public ApplicationInfo(String packageName) {
+        this.packageName = packageName;
+    }
+
+    public CharSequence loadLabel(PackageManager packageManager) {
+        return packageName;
+    }
+}
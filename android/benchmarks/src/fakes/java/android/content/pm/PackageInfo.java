@@ -0,0 +1,8 @@
+package android.content.pm;
+
+public class PackageInfo {
+
+    public String packageName;
+    public String versionName = "1.0";
+    public int versionCode = 1;
+}
@@ -0,0 +1,13 @@
+package android.content.pm;
+
+public class PackageManager {
+
+    public static class NameNotFoundException extends Exception {
+    }
+
+    public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+        PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        return packageInfo;
+    }
+}
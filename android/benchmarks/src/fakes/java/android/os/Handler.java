@@ -0,0 +1,71 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts to its looper's thread. Callbacks are remembered until they ran, so
+ * removeCallbacks can cancel them.
+ */
+public class Handler {
+
+    private final Looper _looper;
+    private final Map<Runnable, List<Future<?>>> _posted = new HashMap<Runnable, List<Future<?>>>();
+
+    public Handler(Looper looper) {
+        _looper = looper;
+    }
+
+    public final boolean post(Runnable runnable) {
+        return postDelayed(runnable, 0);
+    }
+
+    public final boolean postDelayed(final Runnable runnable, long delayMillis) {
+        final Future<?>[] future = new Future<?>[1];
+
+        synchronized (_posted) {
+            try {
+                future[0] = _looper.executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (_posted) {
+                            List<Future<?>> futures = _posted.get(runnable);
+                            if (futures != null && futures.remove(future[0]) && futures.isEmpty()) {
+                                _posted.remove(runnable);
+                            }
+                        }
+                        runnable.run();
+                    }
+                }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The looper has quit
+                return false;
+            }
+
+            List<Future<?>> futures = _posted.get(runnable);
+            if (futures == null) {
+                futures = new ArrayList<Future<?>>(1);
+                _posted.put(runnable, futures);
+            }
+            futures.add(future[0]);
+        }
+
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        synchronized (_posted) {
+            List<Future<?>> futures = _posted.remove(runnable);
+            if (futures != null) {
+                for (Future<?> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package android.os;
+
+public class HandlerThread {
+
+    private final String _name;
+    private Looper _looper;
+
+    public HandlerThread(String name) {
+        _name = name;
+    }
+
+    public synchronized void start() {
+        _looper = new Looper(_name);
+    }
+
+    public synchronized Looper getLooper() {
+        return _looper;
+    }
+
+    public synchronized boolean quit() {
+        if (_looper == null) {
+            return false;
+        }
+        _looper.quit();
+        return true;
+    }
+}
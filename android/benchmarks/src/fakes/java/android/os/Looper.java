@@ -0,0 +1,34 @@
+package android.os;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A single daemon thread running posted callbacks in order, at their time.
+ */
+public class Looper {
+
+    private static final Looper MAIN = new Looper("main");
+
+    final ScheduledThreadPoolExecutor executor;
+
+    Looper(final String name) {
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static Looper getMainLooper() {
+        return MAIN;
+    }
+
+    public void quit() {
+        executor.shutdownNow();
+    }
+}
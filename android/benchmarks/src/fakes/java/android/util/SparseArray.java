@@ -0,0 +1,102 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * Sorted int keys with binary search, like the platform class, so lookups
+ * and inserts cost about the same.
+ */
+public class SparseArray<E> implements Cloneable {
+
+    private int[] _keys;
+    private Object[] _values;
+    private int _size;
+
+    public SparseArray() {
+        this(10);
+    }
+
+    public SparseArray(int initialCapacity) {
+        _keys = new int[Math.max(1, initialCapacity)];
+        _values = new Object[_keys.length];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public SparseArray<E> clone() {
+        try {
+            SparseArray<E> clone = (SparseArray<E>) super.clone();
+            clone._keys = _keys.clone();
+            clone._values = _values.clone();
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int index = Arrays.binarySearch(_keys, 0, _size, key);
+        return index >= 0 ? (E) _values[index] : valueIfKeyNotFound;
+    }
+
+    public void put(int key, E value) {
+        int index = Arrays.binarySearch(_keys, 0, _size, key);
+
+        if (index >= 0) {
+            _values[index] = value;
+            return;
+        }
+
+        index = ~index;
+        if (_size == _keys.length) {
+            _keys = Arrays.copyOf(_keys, _size * 2);
+            _values = Arrays.copyOf(_values, _size * 2);
+        }
+        System.arraycopy(_keys, index, _keys, index + 1, _size - index);
+        System.arraycopy(_values, index, _values, index + 1, _size - index);
+        _keys[index] = key;
+        _values[index] = value;
+        _size++;
+    }
+
+    public void delete(int key) {
+        int index = Arrays.binarySearch(_keys, 0, _size, key);
+
+        if (index >= 0) {
+            System.arraycopy(_keys, index + 1, _keys, index, _size - index - 1);
+            System.arraycopy(_values, index + 1, _values, index, _size - index - 1);
+            _values[--_size] = null;
+        }
+    }
+
+    public void remove(int key) {
+        delete(key);
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public int keyAt(int index) {
+        return _keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) _values[index];
+    }
+
+    public int indexOfKey(int key) {
+        return Arrays.binarySearch(_keys, 0, _size, key);
+    }
+
+    public void clear() {
+        Arrays.fill(_values, 0, _size, null);
+        _size = 0;
+    }
+}
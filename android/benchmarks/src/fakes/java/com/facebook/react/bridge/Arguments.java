@@ -0,0 +1,16 @@
+package com.facebook.react.bridge;
+
+/**
+ * Creates Java backed maps and arrays, the native ones need the React Native
+ * libraries loaded.
+ */
+public class Arguments {
+
+    public static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    public static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+}
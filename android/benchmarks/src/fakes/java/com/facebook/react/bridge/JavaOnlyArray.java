@@ -0,0 +1,119 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JavaOnlyArray implements WritableArray {
+
+    private final List<Object> _backingList = new ArrayList<Object>();
+
+    public static JavaOnlyArray of(Object... values) {
+        JavaOnlyArray array = new JavaOnlyArray();
+        for (Object value : values) {
+            array._backingList.add(toBridgeValue(value));
+        }
+        return array;
+    }
+
+    static Object toBridgeValue(Object value) {
+        // JavaScript numbers arrive as doubles
+        return value instanceof Number ? (Object) ((Number) value).doubleValue() : value;
+    }
+
+    static ReadableType typeOf(Object value) {
+        if (value == null) {
+            return ReadableType.Null;
+        } else if (value instanceof Boolean) {
+            return ReadableType.Boolean;
+        } else if (value instanceof Number) {
+            return ReadableType.Number;
+        } else if (value instanceof String) {
+            return ReadableType.String;
+        } else if (value instanceof ReadableMap) {
+            return ReadableType.Map;
+        } else if (value instanceof ReadableArray) {
+            return ReadableType.Array;
+        }
+        throw new IllegalArgumentException("Not a bridge value: " + value);
+    }
+
+    @Override
+    public int size() {
+        return _backingList.size();
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return _backingList.get(index) == null;
+    }
+
+    @Override
+    public boolean getBoolean(int index) {
+        return (Boolean) _backingList.get(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return (Double) _backingList.get(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return ((Double) _backingList.get(index)).intValue();
+    }
+
+    @Override
+    public String getString(int index) {
+        return (String) _backingList.get(index);
+    }
+
+    @Override
+    public ReadableArray getArray(int index) {
+        return (ReadableArray) _backingList.get(index);
+    }
+
+    @Override
+    public ReadableMap getMap(int index) {
+        return (ReadableMap) _backingList.get(index);
+    }
+
+    @Override
+    public ReadableType getType(int index) {
+        return typeOf(_backingList.get(index));
+    }
+
+    @Override
+    public void pushNull() {
+        _backingList.add(null);
+    }
+
+    @Override
+    public void pushBoolean(boolean value) {
+        _backingList.add(value);
+    }
+
+    @Override
+    public void pushDouble(double value) {
+        _backingList.add(value);
+    }
+
+    @Override
+    public void pushInt(int value) {
+        _backingList.add((double) value);
+    }
+
+    @Override
+    public void pushString(String value) {
+        _backingList.add(value);
+    }
+
+    @Override
+    public void pushArray(WritableArray array) {
+        _backingList.add(array);
+    }
+
+    @Override
+    public void pushMap(WritableMap map) {
+        _backingList.add(map);
+    }
+}
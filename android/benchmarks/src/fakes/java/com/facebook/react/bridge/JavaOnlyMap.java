@@ -0,0 +1,122 @@
+package com.facebook.react.bridge;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Backed by a map, values typed the way the native maps type JavaScript
+ * values: numbers are doubles.
+ */
+public class JavaOnlyMap implements WritableMap {
+
+    private final Map<String, Object> _backingMap = new LinkedHashMap<String, Object>();
+
+    /**
+     * @param keysAndValues alternating keys and values
+     */
+    public static JavaOnlyMap of(Object... keysAndValues) {
+        JavaOnlyMap map = new JavaOnlyMap();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map._backingMap.put((String) keysAndValues[i], JavaOnlyArray.toBridgeValue(keysAndValues[i + 1]));
+        }
+        return map;
+    }
+
+    @Override
+    public boolean hasKey(String name) {
+        return _backingMap.containsKey(name);
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return _backingMap.get(name) == null;
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return (Boolean) _backingMap.get(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return (Double) _backingMap.get(name);
+    }
+
+    @Override
+    public int getInt(String name) {
+        return ((Double) _backingMap.get(name)).intValue();
+    }
+
+    @Override
+    public String getString(String name) {
+        return (String) _backingMap.get(name);
+    }
+
+    @Override
+    public ReadableArray getArray(String name) {
+        return (ReadableArray) _backingMap.get(name);
+    }
+
+    @Override
+    public ReadableMap getMap(String name) {
+        return (ReadableMap) _backingMap.get(name);
+    }
+
+    @Override
+    public ReadableType getType(String name) {
+        return JavaOnlyArray.typeOf(_backingMap.get(name));
+    }
+
+    @Override
+    public ReadableMapKeySetIterator keySetIterator() {
+        final Iterator<String> keys = _backingMap.keySet().iterator();
+
+        return new ReadableMapKeySetIterator() {
+            @Override
+            public boolean hasNextKey() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public String nextKey() {
+                return keys.next();
+            }
+        };
+    }
+
+    @Override
+    public void putNull(String key) {
+        _backingMap.put(key, null);
+    }
+
+    @Override
+    public void putBoolean(String key, boolean value) {
+        _backingMap.put(key, value);
+    }
+
+    @Override
+    public void putDouble(String key, double value) {
+        _backingMap.put(key, value);
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+        _backingMap.put(key, (double) value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        _backingMap.put(key, value);
+    }
+
+    @Override
+    public void putArray(String key, WritableArray value) {
+        _backingMap.put(key, value);
+    }
+
+    @Override
+    public void putMap(String key, WritableMap value) {
+        _backingMap.put(key, value);
+    }
+}
@@ -0,0 +1,34 @@
+package com.facebook.react.bridge;
+
+import android.content.Context;
+
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Has no catalyst instance, so there is no JavaScript to call into.
+ */
+public class ReactContext extends Context {
+
+    private final CopyOnWriteArraySet<LifecycleEventListener> _lifecycleEventListeners =
+        new CopyOnWriteArraySet<LifecycleEventListener>();
+
+    public ReactContext(Context base) {
+        super(base.getFilesDir(), base.getPackageName());
+    }
+
+    public void addLifecycleEventListener(LifecycleEventListener listener) {
+        _lifecycleEventListeners.add(listener);
+    }
+
+    public void removeLifecycleEventListener(LifecycleEventListener listener) {
+        _lifecycleEventListeners.remove(listener);
+    }
+
+    public boolean hasActiveCatalystInstance() {
+        return false;
+    }
+
+    public <T extends JavaScriptModule> T getJSModule(Class<T> jsInterface) {
+        throw new IllegalStateException("No catalyst instance");
+    }
+}
@@ -0,0 +1,25 @@
+package com.facebook.react.bridge;
+
+import java.util.Map;
+
+public abstract class ReactContextBaseJavaModule {
+
+    private final ReactApplicationContext _reactApplicationContext;
+
+    public ReactContextBaseJavaModule(ReactApplicationContext reactContext) {
+        _reactApplicationContext = reactContext;
+    }
+
+    public abstract String getName();
+
+    public Map<String, Object> getConstants() {
+        return null;
+    }
+
+    public void onCatalystInstanceDestroy() {
+    }
+
+    protected final ReactApplicationContext getReactApplicationContext() {
+        return _reactApplicationContext;
+    }
+}
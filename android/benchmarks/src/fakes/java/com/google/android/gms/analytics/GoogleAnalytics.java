@@ -0,0 +1,49 @@
+package com.google.android.gms.analytics;
+
+import android.content.Context;
+
+/**
+ * Hands out trackers which keep hits in memory. Dispatching does nothing.
+ */
+public class GoogleAnalytics {
+
+    private static GoogleAnalytics sInstance;
+
+    private volatile int _localDispatchPeriod = 1800;
+    private volatile boolean _appOptOut;
+    private volatile boolean _dryRun;
+
+    public static synchronized GoogleAnalytics getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new GoogleAnalytics();
+        }
+        return sInstance;
+    }
+
+    public Tracker newTracker(String trackingId) {
+        return new Tracker(trackingId);
+    }
+
+    public void setLocalDispatchPeriod(int dispatchPeriodInSeconds) {
+        _localDispatchPeriod = dispatchPeriodInSeconds;
+    }
+
+    public void dispatchLocalHits() {
+    }
+
+    public void setAppOptOut(boolean optOut) {
+        _appOptOut = optOut;
+    }
+
+    public boolean getAppOptOut() {
+        return _appOptOut;
+    }
+
+    public void setDryRun(boolean dryRun) {
+        _dryRun = dryRun;
+    }
+
+    public boolean isDryRunEnabled() {
+        return _dryRun;
+    }
+}
@@ -0,0 +1,206 @@
+package com.google.android.gms.analytics;
+
+import com.google.android.gms.analytics.ecommerce.Product;
+import com.google.android.gms.analytics.ecommerce.ProductAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the same Measurement Protocol keys as the SDK, products and
+ * impressions included, so building a hit allocates about as much.
+ */
+public class HitBuilders {
+
+    @SuppressWarnings("unchecked")
+    public static class HitBuilder<T extends HitBuilder> {
+
+        private final Map<String, String> _fields = new HashMap<String, String>();
+        private final List<Product> _products = new ArrayList<Product>();
+        private final Map<String, List<Product>> _impressions = new LinkedHashMap<String, List<Product>>();
+        private ProductAction _productAction;
+
+        protected HitBuilder() {
+        }
+
+        public T set(String paramName, String paramValue) {
+            if (paramName != null) {
+                _fields.put(paramName, paramValue);
+            }
+            return (T) this;
+        }
+
+        public final T setAll(Map<String, String> params) {
+            if (params != null) {
+                _fields.putAll(params);
+            }
+            return (T) this;
+        }
+
+        protected T setHitType(String hitType) {
+            return set("&t", hitType);
+        }
+
+        public T setCustomDimension(int index, String dimension) {
+            return set("&cd" + index, dimension);
+        }
+
+        public T setCustomMetric(int index, float metric) {
+            return set("&cm" + index, Float.toString(metric));
+        }
+
+        public T setNonInteraction(boolean nonInteraction) {
+            return set("&ni", nonInteraction ? "1" : "0");
+        }
+
+        public T setNewSession() {
+            return set("&sc", "start");
+        }
+
+        public T addProduct(Product product) {
+            _products.add(product);
+            return (T) this;
+        }
+
+        public T addImpression(Product product, String impressionList) {
+            String list = impressionList != null ? impressionList : "";
+            List<Product> products = _impressions.get(list);
+
+            if (products == null) {
+                products = new ArrayList<Product>();
+                _impressions.put(list, products);
+            }
+
+            products.add(product);
+            return (T) this;
+        }
+
+        public T setProductAction(ProductAction action) {
+            _productAction = action;
+            return (T) this;
+        }
+
+        public Map<String, String> build() {
+            Map<String, String> hit = new HashMap<String, String>(_fields);
+
+            if (_productAction != null) {
+                hit.putAll(_productAction.build());
+            }
+
+            for (int i = 0; i < _products.size(); i++) {
+                hit.putAll(_products.get(i).build("&pr" + (i + 1)));
+            }
+
+            int listIndex = 1;
+            for (Map.Entry<String, List<Product>> list : _impressions.entrySet()) {
+                String listPrefix = "&il" + listIndex++;
+                hit.put(listPrefix + "nm", list.getKey());
+
+                List<Product> products = list.getValue();
+                for (int i = 0; i < products.size(); i++) {
+                    hit.putAll(products.get(i).build(listPrefix + "pi" + (i + 1)));
+                }
+            }
+
+            return hit;
+        }
+    }
+
+    public static class ScreenViewBuilder extends HitBuilder<ScreenViewBuilder> {
+        public ScreenViewBuilder() {
+            setHitType("screenview");
+        }
+    }
+
+    public static class EventBuilder extends HitBuilder<EventBuilder> {
+        public EventBuilder() {
+            setHitType("event");
+        }
+
+        public EventBuilder(String category, String action) {
+            this();
+            setCategory(category);
+            setAction(action);
+        }
+
+        public EventBuilder setCategory(String category) {
+            return set("&ec", category);
+        }
+
+        public EventBuilder setAction(String action) {
+            return set("&ea", action);
+        }
+
+        public EventBuilder setLabel(String label) {
+            return set("&el", label);
+        }
+
+        public EventBuilder setValue(long value) {
+            return set("&ev", Long.toString(value));
+        }
+    }
+
+    public static class TimingBuilder extends HitBuilder<TimingBuilder> {
+        public TimingBuilder() {
+            setHitType("timing");
+        }
+
+        public TimingBuilder(String category, String variable, long value) {
+            this();
+            setCategory(category);
+            setVariable(variable);
+            setValue(value);
+        }
+
+        public TimingBuilder setCategory(String category) {
+            return set("&utc", category);
+        }
+
+        public TimingBuilder setVariable(String variable) {
+            return set("&utv", variable);
+        }
+
+        public TimingBuilder setValue(long value) {
+            return set("&utt", Long.toString(value));
+        }
+
+        public TimingBuilder setLabel(String label) {
+            return set("&utl", label);
+        }
+    }
+
+    public static class ExceptionBuilder extends HitBuilder<ExceptionBuilder> {
+        public ExceptionBuilder() {
+            setHitType("exception");
+        }
+
+        public ExceptionBuilder setDescription(String description) {
+            return set("&exd", description);
+        }
+
+        public ExceptionBuilder setFatal(boolean fatal) {
+            return set("&exf", fatal ? "1" : "0");
+        }
+    }
+
+    public static class SocialBuilder extends HitBuilder<SocialBuilder> {
+        public SocialBuilder() {
+            setHitType("social");
+        }
+
+        public SocialBuilder setNetwork(String network) {
+            return set("&sn", network);
+        }
+
+        public SocialBuilder setAction(String action) {
+            return set("&sa", action);
+        }
+
+        public SocialBuilder setTarget(String target) {
+            return set("&st", target);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.google.android.gms.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Merges its fields into each hit the way the SDK does before storing it,
+ * then only counts the hit.
+ */
+public class Tracker {
+
+    private final Map<String, String> _fields = new HashMap<String, String>();
+    private volatile long _sentCount;
+    private volatile Map<String, String> _lastHit;
+
+    Tracker(String trackingId) {
+        _fields.put("&tid", trackingId);
+        _fields.put("&cid", UUID.randomUUID().toString());
+    }
+
+    public synchronized void set(String key, String value) {
+        if (value != null) {
+            _fields.put(key, value);
+        } else {
+            _fields.remove(key);
+        }
+    }
+
+    public synchronized String get(String key) {
+        return _fields.get(key);
+    }
+
+    public void send(Map<String, String> params) {
+        Map<String, String> hit;
+
+        synchronized (this) {
+            hit = new HashMap<String, String>(_fields);
+        }
+        hit.putAll(params);
+
+        _lastHit = hit;
+        _sentCount++;
+    }
+
+    public long getSentCount() {
+        return _sentCount;
+    }
+
+    public Map<String, String> getLastHit() {
+        return _lastHit;
+    }
+
+    public void setScreenName(String screenName) {
+        set("&cd", screenName);
+    }
+
+    public void setAppName(String appName) {
+        set("&an", appName);
+    }
+
+    public void setAppVersion(String appVersion) {
+        set("&av", appVersion);
+    }
+
+    public void setAnonymizeIp(boolean anonymize) {
+        set("&aip", anonymize ? "1" : "0");
+    }
+
+    public void setSampleRate(double sampleRate) {
+        set("&sf", Double.toString(sampleRate));
+    }
+
+    public void enableAdvertisingIdCollection(boolean enabled) {
+    }
+
+    public void enableExceptionReporting(boolean enable) {
+    }
+}
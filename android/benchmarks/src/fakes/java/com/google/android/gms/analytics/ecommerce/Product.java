@@ -0,0 +1,69 @@
+package com.google.android.gms.analytics.ecommerce;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Product {
+
+    private final Map<String, String> _fields = new HashMap<String, String>();
+
+    public Product setId(String value) {
+        return put("id", value);
+    }
+
+    public Product setName(String value) {
+        return put("nm", value);
+    }
+
+    public Product setBrand(String value) {
+        return put("br", value);
+    }
+
+    public Product setCategory(String value) {
+        return put("ca", value);
+    }
+
+    public Product setVariant(String value) {
+        return put("va", value);
+    }
+
+    public Product setPrice(double value) {
+        return put("pr", Double.toString(value));
+    }
+
+    public Product setQuantity(int value) {
+        return put("qt", Integer.toString(value));
+    }
+
+    public Product setCouponCode(String value) {
+        return put("cc", value);
+    }
+
+    public Product setPosition(int value) {
+        return put("ps", Integer.toString(value));
+    }
+
+    public Product setCustomDimension(int index, String value) {
+        return put("cd" + index, value);
+    }
+
+    public Product setCustomMetric(int index, int value) {
+        return put("cm" + index, Integer.toString(value));
+    }
+
+    /**
+     * The product's hit fields, each key prefixed like &pr1.
+     */
+    public Map<String, String> build(String prefix) {
+        Map<String, String> fields = new HashMap<String, String>();
+        for (Map.Entry<String, String> field : _fields.entrySet()) {
+            fields.put(prefix + field.getKey(), field.getValue());
+        }
+        return fields;
+    }
+
+    private Product put(String key, String value) {
+        _fields.put(key, value);
+        return this;
+    }
+}
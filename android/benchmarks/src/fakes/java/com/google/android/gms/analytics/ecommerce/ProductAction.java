@@ -0,0 +1,67 @@
+package com.google.android.gms.analytics.ecommerce;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ProductAction {
+
+    public static final String ACTION_ADD = "add";
+    public static final String ACTION_CHECKOUT = "checkout";
+    public static final String ACTION_CHECKOUT_OPTION = "checkout_option";
+    public static final String ACTION_CLICK = "click";
+    public static final String ACTION_DETAIL = "detail";
+    public static final String ACTION_PURCHASE = "purchase";
+    public static final String ACTION_REFUND = "refund";
+    public static final String ACTION_REMOVE = "remove";
+
+    private final Map<String, String> _fields = new HashMap<String, String>();
+
+    public ProductAction(String action) {
+        _fields.put("&pa", action);
+    }
+
+    public ProductAction setTransactionId(String value) {
+        return put("&ti", value);
+    }
+
+    public ProductAction setTransactionAffiliation(String value) {
+        return put("&ta", value);
+    }
+
+    public ProductAction setTransactionRevenue(double value) {
+        return put("&tr", Double.toString(value));
+    }
+
+    public ProductAction setTransactionTax(double value) {
+        return put("&tt", Double.toString(value));
+    }
+
+    public ProductAction setTransactionShipping(double value) {
+        return put("&ts", Double.toString(value));
+    }
+
+    public ProductAction setTransactionCouponCode(String value) {
+        return put("&tcc", value);
+    }
+
+    public ProductAction setProductActionList(String value) {
+        return put("&pal", value);
+    }
+
+    public ProductAction setCheckoutStep(int value) {
+        return put("&cos", Integer.toString(value));
+    }
+
+    public ProductAction setCheckoutOptions(String value) {
+        return put("&col", value);
+    }
+
+    public Map<String, String> build() {
+        return new HashMap<String, String>(_fields);
+    }
+
+    private ProductAction put(String key, String value) {
+        _fields.put(key, value);
+        return this;
+    }
+}
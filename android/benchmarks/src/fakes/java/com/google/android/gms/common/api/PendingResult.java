@@ -0,0 +1,23 @@
+package com.google.android.gms.common.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Already complete, callbacks get the result right away on the calling thread.
+ */
+public class PendingResult<R extends Result> {
+
+    private final R _result;
+
+    public PendingResult(R result) {
+        _result = result;
+    }
+
+    public void setResultCallback(ResultCallback<? super R> callback) {
+        callback.onResult(_result);
+    }
+
+    public void setResultCallback(ResultCallback<? super R> callback, long time, TimeUnit unit) {
+        callback.onResult(_result);
+    }
+}
@@ -0,0 +1,25 @@
+package com.google.android.gms.common.api;
+
+public final class Status implements Result {
+
+    public static final Status RESULT_SUCCESS = new Status(0);
+
+    private final int _statusCode;
+
+    public Status(int statusCode) {
+        _statusCode = statusCode;
+    }
+
+    public boolean isSuccess() {
+        return _statusCode <= 0;
+    }
+
+    public int getStatusCode() {
+        return _statusCode;
+    }
+
+    @Override
+    public Status getStatus() {
+        return this;
+    }
+}
@@ -0,0 +1,46 @@
+package com.google.android.gms.tagmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values are whatever the benchmark puts in, missing ones read as the SDK's
+ * defaults.
+ */
+public class Container {
+
+    private final String _containerId;
+    private final Map<String, Object> _values = new HashMap<String, Object>();
+
+    public Container(String containerId) {
+        _containerId = containerId;
+    }
+
+    public String getContainerId() {
+        return _containerId;
+    }
+
+    public void put(String key, Object value) {
+        _values.put(key, value);
+    }
+
+    public boolean getBoolean(String key) {
+        Object value = _values.get(key);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    public String getString(String key) {
+        Object value = _values.get(key);
+        return value != null ? value.toString() : "";
+    }
+
+    public double getDouble(String key) {
+        Object value = _values.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    public long getLong(String key) {
+        Object value = _values.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.google.android.gms.tagmanager;
+
+import com.google.android.gms.common.api.Result;
+
+public interface ContainerHolder extends Result {
+
+    interface ContainerAvailableListener {
+        void onContainerAvailable(ContainerHolder containerHolder, String containerVersion);
+    }
+
+    Container getContainer();
+
+    void refresh();
+
+    void release();
+
+    void setContainerAvailableListener(ContainerAvailableListener listener);
+}
@@ -0,0 +1,36 @@
+package com.google.android.gms.tagmanager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merges pushed maps into its model like the SDK, but runs no tags.
+ */
+public class DataLayer {
+
+    private final Map<String, Object> _model = new HashMap<String, Object>();
+    private volatile long _pushCount;
+
+    public void push(Map<String, Object> update) {
+        synchronized (_model) {
+            _model.putAll(update);
+        }
+        _pushCount++;
+    }
+
+    public void push(String key, Object value) {
+        Map<String, Object> update = new HashMap<String, Object>(1);
+        update.put(key, value);
+        push(update);
+    }
+
+    public Object get(String key) {
+        synchronized (_model) {
+            return _model.get(key);
+        }
+    }
+
+    public long getPushCount() {
+        return _pushCount;
+    }
+}
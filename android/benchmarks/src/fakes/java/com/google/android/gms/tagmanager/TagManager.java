@@ -0,0 +1,55 @@
+package com.google.android.gms.tagmanager;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+
+/**
+ * Containers load at once and successfully, with no values in them.
+ */
+public class TagManager {
+
+    private static TagManager sInstance;
+
+    private final DataLayer _dataLayer = new DataLayer();
+
+    public static synchronized TagManager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TagManager();
+        }
+        return sInstance;
+    }
+
+    public DataLayer getDataLayer() {
+        return _dataLayer;
+    }
+
+    public PendingResult<ContainerHolder> loadContainerPreferFresh(String containerId, int defaultContainerResourceId) {
+        final Container container = new Container(containerId);
+
+        return new PendingResult<ContainerHolder>(new ContainerHolder() {
+            @Override
+            public Container getContainer() {
+                return container;
+            }
+
+            @Override
+            public void refresh() {
+            }
+
+            @Override
+            public void release() {
+            }
+
+            @Override
+            public void setContainerAvailableListener(ContainerAvailableListener listener) {
+            }
+
+            @Override
+            public Status getStatus() {
+                return Status.RESULT_SUCCESS;
+            }
+        });
+    }
+}
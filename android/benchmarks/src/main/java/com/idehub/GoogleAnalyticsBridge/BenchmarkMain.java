@@ -0,0 +1,44 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmarks twice: for throughput in ops/s with the allocation rate
+ * per op, then sampling each call for latency percentiles in microseconds.
+ * Arguments are regular expressions selecting benchmarks, all run without.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(options(args)
+            .mode(Mode.Throughput)
+            .timeUnit(TimeUnit.SECONDS)
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+
+        new Runner(options(args)
+            .mode(Mode.SampleTime)
+            .timeUnit(TimeUnit.MICROSECONDS)
+            .build()).run();
+    }
+
+    private static ChainedOptionsBuilder options(String[] args) {
+        ChainedOptionsBuilder options = new OptionsBuilder();
+
+        if (args.length == 0) {
+            options.include(BenchmarkMain.class.getPackage().getName() + ".*Benchmark");
+        }
+        for (String include : args) {
+            options.include(include);
+        }
+
+        return options;
+    }
+}
@@ -0,0 +1,132 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.content.Context;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.google.android.gms.analytics.ecommerce.Product;
+import com.google.android.gms.analytics.ecommerce.ProductAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Inputs shaped like what the JavaScript side sends: a cart of products, a
+ * transaction, custom dimensions and a data layer event.
+ */
+final class Fixtures {
+
+    static final String TRACKER_ID = "UA-12345-1";
+
+    private Fixtures() {
+    }
+
+    /**
+     * A context whose files, like the hit journal, go to a new temporary
+     * directory.
+     */
+    static ReactApplicationContext newContext() {
+        try {
+            File filesDir = Files.createTempDirectory("GoogleAnalyticsBridge-benchmark").toFile();
+            return new ReactApplicationContext(new Context(filesDir, "com.idehub.benchmark"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void deleteFiles(Context context) {
+        File[] files = context.getFilesDir().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        context.getFilesDir().delete();
+    }
+
+    static JavaOnlyArray productArray(int count) {
+        JavaOnlyArray products = new JavaOnlyArray();
+
+        for (int i = 0; i < count; i++) {
+            products.pushMap(JavaOnlyMap.of(
+                "id", "P" + (1000 + i),
+                "name", "Product " + i,
+                "brand", "Brand",
+                "variant", i % 2 == 0 ? "Blue" : "Red",
+                "category", "Apparel/Shirts",
+                "price", 19.99 + i,
+                "quantity", 1 + i % 3,
+                "couponCode", "SUMMER"));
+        }
+
+        return products;
+    }
+
+    static Product[] products(int count) {
+        Product[] products = new Product[count];
+
+        for (int i = 0; i < count; i++) {
+            products[i] = new Product()
+                .setId("P" + (1000 + i))
+                .setName("Product " + i)
+                .setBrand("Brand")
+                .setVariant(i % 2 == 0 ? "Blue" : "Red")
+                .setCategory("Apparel/Shirts")
+                .setPrice(19.99 + i)
+                .setQuantity(1 + i % 3)
+                .setCouponCode("SUMMER");
+        }
+
+        return products;
+    }
+
+    static JavaOnlyMap transactionMap() {
+        return JavaOnlyMap.of(
+            "id", "T12345",
+            "affiliation", "Online Store",
+            "revenue", 129.95,
+            "tax", 10.40,
+            "shipping", 4.95,
+            "couponCode", "SUMMER");
+    }
+
+    static ProductAction transaction() {
+        return new ProductAction(ProductAction.ACTION_PURCHASE)
+            .setTransactionId("T12345")
+            .setTransactionAffiliation("Online Store")
+            .setTransactionRevenue(129.95)
+            .setTransactionTax(10.40)
+            .setTransactionShipping(4.95)
+            .setTransactionCouponCode("SUMMER");
+    }
+
+    static JavaOnlyMap dimensionMap(int count) {
+        JavaOnlyMap dimensions = new JavaOnlyMap();
+
+        for (int i = 1; i <= count; i++) {
+            dimensions.putString(Integer.toString(i), "value " + i);
+        }
+
+        return dimensions;
+    }
+
+    static JavaOnlyMap dataLayerEvent() {
+        WritableArray items = new JavaOnlyArray();
+        items.pushMap(JavaOnlyMap.of("id", "P1000", "price", 19.99, "quantity", 2));
+        items.pushMap(JavaOnlyMap.of("id", "P1001", "price", 24.5, "quantity", 1));
+
+        JavaOnlyMap ecommerce = JavaOnlyMap.of("currencyCode", "EUR", "value", 63.48);
+        ecommerce.putArray("items", items);
+
+        JavaOnlyMap event = JavaOnlyMap.of(
+            "event", "purchase",
+            "screenName", "Checkout",
+            "loggedIn", true,
+            "step", 3);
+        event.putMap("ecommerce", ecommerce);
+        return event;
+    }
+}
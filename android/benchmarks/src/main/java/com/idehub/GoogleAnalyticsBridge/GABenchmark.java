@@ -0,0 +1,100 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.util.SparseArray;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.google.android.gms.analytics.ecommerce.Product;
+import com.google.android.gms.analytics.ecommerce.ProductAction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What a track call costs the thread it is made on: building the hit and
+ * handing it to the dispatch thread, journal included. The dispatch thread
+ * keeps sending to a fake tracker meanwhile; when the benchmark outpaces it
+ * the queue drops the oldest hits, as it would on a device.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GABenchmark {
+
+    /**
+     * Only parameterizes the purchase benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Cart {
+
+        @Param({"1", "10", "50"})
+        public int productCount;
+
+        ProductSource products;
+        ProductAction transaction;
+        SparseArray<String> dimensions;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            final Product[] cart = Fixtures.products(productCount);
+            products = new ProductSource() {
+                @Override
+                public int size() {
+                    return cart.length;
+                }
+
+                @Override
+                public Product get(int index) {
+                    return cart[index];
+                }
+
+                @Override
+                public int getPayloadSize() {
+                    return 200;
+                }
+            };
+            transaction = Fixtures.transaction();
+
+            dimensions = new SparseArray<String>();
+            for (int i = 1; i <= 5; i++) {
+                dimensions.put(i, "value " + i);
+            }
+        }
+    }
+
+    private ReactApplicationContext _context;
+    private GA _ga;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _context = Fixtures.newContext();
+        _ga = new GA(_context, new BridgeMetrics());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        _ga.shutdown();
+        // Shutdown finishes on the flush and dispatch threads
+        Thread.sleep(500);
+        Fixtures.deleteFiles(_context);
+    }
+
+    @Benchmark
+    public void trackEvent() {
+        _ga.trackEvent(Fixtures.TRACKER_ID, "Video", "Play", "Intro", true, 42);
+    }
+
+    @Benchmark
+    public void trackMultiProductsPurchaseEventWithCustomDimensionValues(Cart cart) {
+        _ga.trackMultiProductsPurchaseEventWithCustomDimensionValues(Fixtures.TRACKER_ID,
+                cart.products, cart.transaction, "T12345", "Ecommerce", "Purchase", cart.dimensions);
+    }
+}
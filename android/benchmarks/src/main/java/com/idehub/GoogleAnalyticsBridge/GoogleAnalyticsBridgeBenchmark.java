@@ -0,0 +1,86 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding bridge arguments into products and dimensions, alone and as part
+ * of a whole purchase call.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GoogleAnalyticsBridgeBenchmark {
+
+    /**
+     * Only parameterizes the benchmarks which decode products.
+     */
+    @State(Scope.Benchmark)
+    public static class Cart {
+
+        @Param({"1", "10", "50"})
+        public int productCount;
+
+        JavaOnlyArray productArray;
+        JavaOnlyMap transactionMap;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            productArray = Fixtures.productArray(productCount);
+            transactionMap = Fixtures.transactionMap();
+        }
+    }
+
+    private ReactApplicationContext _context;
+    private GoogleAnalyticsBridge _bridge;
+    private JavaOnlyMap _dimensionMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _context = Fixtures.newContext();
+        _bridge = new GoogleAnalyticsBridge(_context, Fixtures.TRACKER_ID, new BridgeMetrics());
+        _dimensionMap = Fixtures.dimensionMap(5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        _bridge.onCatalystInstanceDestroy();
+        Thread.sleep(500);
+        Fixtures.deleteFiles(_context);
+    }
+
+    @Benchmark
+    public Object getDimensionIndices() {
+        return _bridge.getDimensionIndices(_dimensionMap);
+    }
+
+    @Benchmark
+    public void getPurchaseProducts(Cart cart, Blackhole blackhole) {
+        ProductSource products = _bridge.getPurchaseProducts(cart.productArray);
+
+        for (int index = 0; index < products.size(); index++) {
+            blackhole.consume(products.get(index));
+            blackhole.consume(products.getPayloadSize());
+        }
+    }
+
+    @Benchmark
+    public void trackMultiProductsPurchaseEventWithCustomDimensionValues(Cart cart) {
+        _bridge.trackMultiProductsPurchaseEventWithCustomDimensionValues(Fixtures.TRACKER_ID,
+                cart.productArray, cart.transactionMap, "Ecommerce", "Purchase", _dimensionMap);
+    }
+}
@@ -0,0 +1,46 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converting a nested data layer event into the maps and lists Tag Manager
+ * takes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GoogleTagManagerBridgeBenchmark {
+
+    private ReactApplicationContext _context;
+    private GoogleTagManagerBridge _bridge;
+    private JavaOnlyMap _event;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _context = Fixtures.newContext();
+        _bridge = new GoogleTagManagerBridge(_context, new BridgeMetrics());
+        _event = Fixtures.dataLayerEvent();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Fixtures.deleteFiles(_context);
+    }
+
+    @Benchmark
+    public Object getMap() {
+        return _bridge.getMap(_event);
+    }
+}
@@ -0,0 +1,71 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What journaling adds to each record the modules thread queues. Every
+ * record is marked as dispatched right away, as if the dispatch thread kept
+ * up, so the segment keeps being reset instead of filling up. Run with the GC
+ * profiler, an append should allocate nothing.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HitJournalBenchmark {
+
+    private File _file;
+    private HitJournal _journal;
+    private Map<String, String> _hit;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _file = File.createTempFile("HitJournalBenchmark", ".journal");
+        _journal = new HitJournal(_file);
+        _journal.open();
+
+        _hit = new HashMap<String, String>();
+        _hit.put("&t", "event");
+        _hit.put("&ec", "Video");
+        _hit.put("&ea", "Play");
+        _hit.put("&el", "Intro");
+        _hit.put("&ev", "42");
+        _hit.put("&ni", "1");
+        for (int i = 1; i <= 5; i++) {
+            _hit.put("&cd" + i, "value " + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        _journal.close();
+        _file.delete();
+    }
+
+    @Benchmark
+    public long appendHit() {
+        long offset = _journal.appendHit(Fixtures.TRACKER_ID, _hit);
+        _journal.markDispatched(offset);
+        return offset;
+    }
+
+    @Benchmark
+    public long appendSet() {
+        long offset = _journal.appendSet(Fixtures.TRACKER_ID, "&cd", "Home screen");
+        _journal.markDispatched(offset);
+        return offset;
+    }
+}
@@ -0,0 +1,78 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.google.android.gms.analytics.Tracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up an existing tracker from several threads at once: the lock-free
+ * getTracker, through the last used tracker or the concurrent map, against
+ * createTracker, which takes the GA lock as every lookup used to.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TrackerLookupBenchmark {
+
+    private static final String OTHER_TRACKER_ID = "UA-12345-2";
+
+    /**
+     * Alternates between two trackers, so the last used tracker never matches.
+     */
+    @State(Scope.Thread)
+    public static class Alternation {
+        int count;
+
+        String nextTrackerId() {
+            return (count++ & 1) == 0 ? Fixtures.TRACKER_ID : OTHER_TRACKER_ID;
+        }
+    }
+
+    private ReactApplicationContext _context;
+    private GA _ga;
+    private GoogleHitSink.TrackerProvider _provider;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _context = Fixtures.newContext();
+        _ga = new GA(_context, new BridgeMetrics());
+        _provider = _ga.getTrackerProvider();
+        _provider.getTracker(OTHER_TRACKER_ID);
+        _provider.getTracker(Fixtures.TRACKER_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        _ga.shutdown();
+        // Shutdown finishes on the flush and dispatch threads
+        Thread.sleep(500);
+        Fixtures.deleteFiles(_context);
+    }
+
+    @Benchmark
+    public Tracker getTrackerLast() {
+        return _provider.getTracker(Fixtures.TRACKER_ID);
+    }
+
+    @Benchmark
+    public Tracker getTrackerAlternating(Alternation alternation) {
+        return _provider.getTracker(alternation.nextTrackerId());
+    }
+
+    @Benchmark
+    public Tracker createTracker() {
+        return _ga.createTracker(Fixtures.TRACKER_ID);
+    }
+}
@@ -0,0 +1,406 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
+
+import com.google.android.gms.analytics.Tracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads hits straight to the Measurement Protocol /batch endpoint instead of
+ * handing them to the SDK, up to 20 hits per request. Hits are collected until
+ * a batch is full or the oldest one has waited maxDelayMillis, so the radio
+ * wakes up for fewer, larger requests.
+ *
+ * Requests are made on a thread of their own so a slow network never holds up
+ * the dispatch thread. Response bodies are read to the end and the connection
+ * is not disconnected, which leaves it in HttpURLConnection's keep-alive pool
+ * for the next batch. Failed batches are retried with exponential backoff.
+ * Hits waiting for upload are kept in memory only.
+ *
+ * Hits carry the client id, user id and app fields of the SDK's tracker, so
+ * they count towards the same users as hits the SDK sends. The queue time
+ * is added when a batch is uploaded, so retried hits still report when they
+ * happened, along with a cache buster per hit.
+ */
+public class BatchUploadHitSink implements HitSink {
+
+    public static final String DEFAULT_ENDPOINT = "https://www.google-analytics.com/batch";
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30 * 1000;
+
+    // Measurement Protocol limits
+    private static final int MAX_HITS_PER_BATCH = 20;
+    private static final int MAX_BATCH_BYTES = 16 * 1024;
+    private static final int MAX_HIT_BYTES = 8 * 1024;
+    // Hits queued for longer are discarded by Google Analytics
+    private static final long MAX_QUEUE_TIME_MILLIS = 4 * 60 * 60 * 1000;
+    // Room left for the queue time and cache buster added at upload
+    private static final int UPLOAD_FIELDS_BYTES = 48;
+
+    private static final int MAX_PENDING_HITS = 2000;
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 15 * 60 * 1000;
+    private static final int TIMEOUT_MILLIS = 15000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final URL _endpoint;
+    private final boolean _gzip;
+    private final long _maxDelayMillis;
+
+    private final MeasurementProtocolEncoder _encoder;
+    private final Random _random = new Random();
+
+    // Guarded by _lock, shared with the upload thread
+    private final Object _lock = new Object();
+    private final ArrayDeque<PendingHit> _pending = new ArrayDeque<PendingHit>();
+    private long _firstPendingAt;
+    private long _retryAt;
+    private long _backoffMillis;
+    private boolean _closed;
+    private Thread _uploader;
+
+    /**
+     * @param trackers looked up on the dispatch thread for the fields hits
+     *                 inherit from the SDK's tracker
+     * @param endpoint the /batch URL, or a local stand-in collector for testing
+     * @param gzip whether to send request bodies with Content-Encoding: gzip,
+     *             which the endpoint must accept
+     * @param maxDelayMillis how long a hit may wait for its batch to fill up
+     */
+    public BatchUploadHitSink(Context context, GoogleHitSink.TrackerProvider trackers,
+            String endpoint, boolean gzip, long maxDelayMillis) {
+        try {
+            _endpoint = new URL(endpoint != null ? endpoint : DEFAULT_ENDPOINT);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid batch endpoint: " + endpoint, e);
+        }
+        _encoder = new MeasurementProtocolEncoder(new TrackerFieldSource(context, trackers));
+        _gzip = gzip;
+        _maxDelayMillis = Math.max(0, maxDelayMillis);
+    }
+
+    @Override
+    public void send(String trackerId, Map<String, String> hit) {
+        String payload = _encoder.encode(trackerId, hit);
+
+        // URL encoded, so one byte per char
+        if (payload.length() + UPLOAD_FIELDS_BYTES > MAX_HIT_BYTES) {
+            throw new IllegalStateException("Hit exceeds the Measurement Protocol size limit");
+        }
+
+        synchronized (_lock) {
+            if (_closed) {
+                throw new IllegalStateException("Sink is closed");
+            }
+
+            if (_pending.size() == MAX_PENDING_HITS) {
+                _pending.pollFirst();
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (_pending.isEmpty()) {
+                _firstPendingAt = now;
+            }
+            _pending.addLast(new PendingHit(payload, now));
+
+            if (_uploader == null) {
+                _uploader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        uploadPending();
+                    }
+                }, "GoogleAnalyticsBridge-upload");
+                _uploader.setDaemon(true);
+                _uploader.start();
+            } else if (_pending.size() == 1 || _pending.size() >= MAX_HITS_PER_BATCH) {
+                _lock.notify();
+            }
+        }
+    }
+
+    @Override
+    public void set(String trackerId, String field, String value) {
+        _encoder.set(trackerId, field, value);
+    }
+
+    @Override
+    public void flush() {
+        // Batches fill up across dispatches, the upload thread decides when to send
+    }
+
+    /**
+     * Uploads what is pending right away, without retrying, and stops the
+     * upload thread.
+     */
+    @Override
+    public void close() {
+        synchronized (_lock) {
+            _closed = true;
+            _lock.notify();
+        }
+    }
+
+    private void uploadPending() {
+        while (true) {
+            List<PendingHit> batch;
+
+            synchronized (_lock) {
+                if (!awaitBatch()) {
+                    _uploader = null;
+                    return;
+                }
+                batch = takeBatch();
+            }
+
+            boolean uploaded = upload(batch);
+
+            synchronized (_lock) {
+                if (uploaded) {
+                    _backoffMillis = 0;
+                    _retryAt = 0;
+                    continue;
+                }
+
+                if (_closed) {
+                    _pending.clear();
+                    _uploader = null;
+                    return;
+                }
+
+                // Back to the front of the queue, in order
+                for (int i = batch.size() - 1; i >= 0 && _pending.size() < MAX_PENDING_HITS; i--) {
+                    _pending.addFirst(batch.get(i));
+                }
+
+                _backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, _backoffMillis * 2));
+                // Jittered so many devices coming back online do not retry in step
+                long delay = _backoffMillis / 2 + (long) (_random.nextDouble() * (_backoffMillis / 2));
+                _retryAt = SystemClock.elapsedRealtime() + delay;
+            }
+        }
+    }
+
+    /**
+     * Waits until a batch is due. Returns false once the sink is closed and
+     * nothing is left to upload. Called holding _lock.
+     */
+    private boolean awaitBatch() {
+        while (!_closed) {
+            long now = SystemClock.elapsedRealtime();
+            long wait;
+
+            if (now < _retryAt) {
+                wait = _retryAt - now;
+            } else if (_pending.isEmpty()) {
+                wait = 0;
+            } else if (_pending.size() >= MAX_HITS_PER_BATCH || now - _firstPendingAt >= _maxDelayMillis) {
+                return true;
+            } else {
+                wait = _firstPendingAt + _maxDelayMillis - now;
+            }
+
+            try {
+                _lock.wait(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return !_pending.isEmpty();
+    }
+
+    /**
+     * Takes up to 20 hits within the batch size limit, skipping the ones too
+     * old to be accepted. Called holding _lock.
+     */
+    private List<PendingHit> takeBatch() {
+        List<PendingHit> batch = new ArrayList<PendingHit>(MAX_HITS_PER_BATCH);
+        long oldest = SystemClock.elapsedRealtime() - MAX_QUEUE_TIME_MILLIS;
+        int bytes = 0;
+
+        while (!_pending.isEmpty() && batch.size() < MAX_HITS_PER_BATCH) {
+            PendingHit hit = _pending.peekFirst();
+            if (hit.queuedAt < oldest) {
+                _pending.pollFirst();
+                continue;
+            }
+
+            int length = hit.payload.length() + UPLOAD_FIELDS_BYTES + 1;
+            if (!batch.isEmpty() && bytes + length > MAX_BATCH_BYTES) {
+                break;
+            }
+            batch.add(_pending.pollFirst());
+            bytes += length;
+        }
+
+        // The rest is already overdue
+        _firstPendingAt = SystemClock.elapsedRealtime() - _maxDelayMillis;
+        return batch;
+    }
+
+    /**
+     * Returns false if the batch should be retried.
+     */
+    private boolean upload(List<PendingHit> batch) {
+        HttpURLConnection connection = null;
+
+        try {
+            byte[] body = encodeBody(batch);
+
+            connection = (HttpURLConnection) _endpoint.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            if (_gzip) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(body);
+            } finally {
+                output.close();
+            }
+
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+
+            // Client errors would fail again, those batches are dropped
+            return status < 500 && status != 429;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    private byte[] encodeBody(List<PendingHit> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_BATCH_BYTES);
+        OutputStream output = _gzip ? new GZIPOutputStream(bytes) : bytes;
+        long now = SystemClock.elapsedRealtime();
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingHit hit = batch.get(i);
+            if (i > 0) {
+                output.write('\n');
+            }
+            output.write(hit.payload.getBytes(UTF_8));
+            // Set on every attempt, a retried hit has waited longer
+            String uploadFields = "&qt=" + Math.max(0, now - hit.queuedAt)
+                + "&z=" + (_random.nextLong() & Long.MAX_VALUE);
+            output.write(uploadFields.getBytes(UTF_8));
+        }
+        output.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the response to the end, so the connection can be reused.
+     */
+    private static void drain(InputStream input) throws IOException {
+        if (input == null) {
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[512];
+            while (input.read(buffer) != -1) {
+                // Discarded
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static final class PendingHit {
+        final String payload;
+        final long queuedAt;
+
+        PendingHit(String payload, long queuedAt) {
+            this.payload = payload;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * Reads fields from the SDK's trackers, falling back to the app's package
+     * info for the app fields the SDK only adds when sending. Used on the
+     * dispatch thread.
+     */
+    private static final class TrackerFieldSource implements MeasurementProtocolEncoder.FieldSource {
+        private final Context _context;
+        private final GoogleHitSink.TrackerProvider _trackers;
+        private String _appName;
+        private String _appId;
+        private String _appVersion;
+
+        TrackerFieldSource(Context context, GoogleHitSink.TrackerProvider trackers) {
+            _context = context.getApplicationContext();
+            _trackers = trackers;
+        }
+
+        @Override
+        public String get(String trackerId, String field) {
+            Tracker tracker = _trackers.getTracker(trackerId);
+            String value = tracker.get(field);
+
+            if (value != null) {
+                return value;
+            }
+
+            switch (field) {
+                case "&an":
+                    loadAppInfo();
+                    return _appName;
+                case "&aid":
+                    loadAppInfo();
+                    return _appId;
+                case "&av":
+                    loadAppInfo();
+                    return _appVersion;
+                default:
+                    return null;
+            }
+        }
+
+        private void loadAppInfo() {
+            if (_appId != null) {
+                return;
+            }
+
+            _appId = _context.getPackageName();
+            PackageManager packageManager = _context.getPackageManager();
+            ApplicationInfo applicationInfo = _context.getApplicationInfo();
+            _appName = applicationInfo.loadLabel(packageManager).toString();
+
+            try {
+                PackageInfo packageInfo = packageManager.getPackageInfo(_appId, 0);
+                _appVersion = packageInfo.versionName;
+            } catch (PackageManager.NameNotFoundException e) {
+                // Our own package, always installed
+            }
+        }
+    }
+}
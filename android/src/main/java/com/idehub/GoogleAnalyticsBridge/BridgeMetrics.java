@@ -0,0 +1,138 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts and latency histograms for the bridge modules and the hit
+ * pipeline. Recording only increments atomic counters, so it can stay on in
+ * production.
+ */
+public class BridgeMetrics {
+
+    public final LatencyHistogram decode = new LatencyHistogram();
+    public final LatencyHistogram queueWait = new LatencyHistogram();
+    public final LatencyHistogram send = new LatencyHistogram();
+
+    private final ConcurrentMap<String, AtomicLong> _calls = new ConcurrentHashMap<String, AtomicLong>();
+    private final long _startedAt = System.nanoTime();
+
+    /**
+     * Counts a call of a bridge method and returns the start time to pass to
+     * endDecode.
+     */
+    public long startCall(String method) {
+        AtomicLong calls = _calls.get(method);
+
+        if (calls == null) {
+            AtomicLong created = new AtomicLong();
+            calls = _calls.putIfAbsent(method, created);
+            if (calls == null) {
+                calls = created;
+            }
+        }
+
+        calls.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void endDecode(long startedAt) {
+        decode.record(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * @param dispatcher supplies the hit counters, may be null
+     */
+    public WritableMap toWritableMap(HitDispatcher dispatcher) {
+        double uptimeSeconds = (System.nanoTime() - _startedAt) / 1e9;
+
+        WritableMap calls = Arguments.createMap();
+        for (Map.Entry<String, AtomicLong> entry : _calls.entrySet()) {
+            WritableMap method = Arguments.createMap();
+            long count = entry.getValue().get();
+            method.putDouble("count", count);
+            method.putDouble("perSecond", count / uptimeSeconds);
+            calls.putMap(entry.getKey(), method);
+        }
+
+        WritableMap hits = Arguments.createMap();
+        if (dispatcher != null) {
+            hits.putDouble("enqueued", dispatcher.getEnqueuedCount());
+            hits.putDouble("dropped", dispatcher.getDroppedCount());
+            hits.putDouble("sent", dispatcher.getSentCount());
+            hits.putDouble("queued", dispatcher.getQueuedCount());
+        }
+
+        WritableMap metrics = Arguments.createMap();
+        metrics.putDouble("uptimeSeconds", uptimeSeconds);
+        metrics.putMap("calls", calls);
+        metrics.putMap("hits", hits);
+        metrics.putMap("decode", decode.toWritableMap());
+        metrics.putMap("queueWait", queueWait.toWritableMap());
+        metrics.putMap("send", send.toWritableMap());
+        return metrics;
+    }
+
+    /**
+     * Histogram with power of two nanosecond buckets. Percentiles are
+     * reported as the upper bound of their bucket, so they are at most a
+     * factor two too high.
+     */
+    public static class LatencyHistogram {
+
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong _count = new AtomicLong();
+        private final AtomicLong _sum = new AtomicLong();
+        private final AtomicLong _max = new AtomicLong();
+
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+
+            _buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1));
+            _count.incrementAndGet();
+            _sum.addAndGet(nanos);
+
+            long max = _max.get();
+            while (nanos > max && !_max.compareAndSet(max, nanos)) {
+                max = _max.get();
+            }
+        }
+
+        private double percentileMicros(long count, double percentile) {
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += _buckets.get(bucket);
+                if (seen >= rank) {
+                    return Math.min((double) (2L << Math.min(bucket, 62)), _max.get()) / 1000;
+                }
+            }
+
+            return _max.get() / 1000.0;
+        }
+
+        WritableMap toWritableMap() {
+            long count = _count.get();
+
+            WritableMap histogram = Arguments.createMap();
+            histogram.putDouble("count", count);
+            histogram.putDouble("meanMicros", count > 0 ? _sum.get() / 1000.0 / count : 0);
+            histogram.putDouble("p50Micros", count > 0 ? percentileMicros(count, 0.5) : 0);
+            histogram.putDouble("p90Micros", count > 0 ? percentileMicros(count, 0.9) : 0);
+            histogram.putDouble("p99Micros", count > 0 ? percentileMicros(count, 0.99) : 0);
+            histogram.putDouble("maxMicros", _max.get() / 1000.0);
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.google.android.gms.tagmanager.Container;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-through cache of typed values from one version of a Tag Manager
+ * container. A new snapshot is created whenever the container is refreshed,
+ * so entries never need invalidating and reads take no locks.
+ *
+ * The values read so far can be saved to a file and loaded on the next cold
+ * start, before the container itself is available. A loaded snapshot has no
+ * container behind it, so keys it does not hold read as null.
+ */
+public class ContainerSnapshot {
+
+    private static final int MAGIC = 0x47544D53;
+    private static final int VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Container _container;
+    private final ConcurrentMap<String, Boolean> _booleans = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentMap<String, String> _strings = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, Double> _doubles = new ConcurrentHashMap<String, Double>();
+    private volatile boolean _dirty;
+
+    /**
+     * @param previous the snapshot being replaced; the keys it holds are read
+     *                 from the new container right away, so they stay cached
+     */
+    public ContainerSnapshot(Container container, ContainerSnapshot previous) {
+        _container = container;
+
+        if (previous != null) {
+            for (String key : previous._booleans.keySet()) {
+                _booleans.put(key, container.getBoolean(key));
+            }
+            for (String key : previous._strings.keySet()) {
+                _strings.put(key, container.getString(key));
+            }
+            for (String key : previous._doubles.keySet()) {
+                _doubles.put(key, container.getDouble(key));
+            }
+            _dirty = true;
+        }
+    }
+
+    private ContainerSnapshot() {
+        _container = null;
+    }
+
+    public Boolean getBoolean(String key) {
+        Boolean value = _booleans.get(key);
+
+        if (value == null && _container != null) {
+            value = _container.getBoolean(key);
+            _booleans.put(key, value);
+            _dirty = true;
+        }
+
+        return value;
+    }
+
+    public String getString(String key) {
+        String value = _strings.get(key);
+
+        if (value == null && _container != null) {
+            value = _container.getString(key);
+            _strings.put(key, value);
+            _dirty = true;
+        }
+
+        return value;
+    }
+
+    public Double getDouble(String key) {
+        Double value = _doubles.get(key);
+
+        if (value == null && _container != null) {
+            value = _container.getDouble(key);
+            _doubles.put(key, value);
+            _dirty = true;
+        }
+
+        return value;
+    }
+
+    /**
+     * Loads a snapshot saved by save(), or returns null if there is none or it
+     * cannot be read.
+     */
+    public static ContainerSnapshot load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null;
+            }
+
+            ContainerSnapshot snapshot = new ContainerSnapshot();
+            // No string can be longer than the file, guards against corrupt lengths
+            long limit = file.length();
+
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                snapshot._booleans.put(readString(input, limit), input.readBoolean());
+            }
+            count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                snapshot._strings.put(readString(input, limit), readString(input, limit));
+            }
+            count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                snapshot._doubles.put(readString(input, limit), input.readDouble());
+            }
+
+            return snapshot;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Writes the values read so far, if any changed since the last save. The
+     * file is replaced atomically, so a reader never sees a partial snapshot.
+     */
+    public synchronized void save(File file) {
+        if (!_dirty || _container == null) {
+            return;
+        }
+        _dirty = false;
+
+        // Copied so the counts written match the entries, even if reads add keys meanwhile
+        Map<String, Boolean> booleans = new HashMap<String, Boolean>(_booleans);
+        Map<String, String> strings = new HashMap<String, String>(_strings);
+        Map<String, Double> doubles = new HashMap<String, Double>(_doubles);
+
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            output.writeInt(booleans.size());
+            for (Map.Entry<String, Boolean> entry : booleans.entrySet()) {
+                writeString(output, entry.getKey());
+                output.writeBoolean(entry.getValue());
+            }
+            output.writeInt(strings.size());
+            for (Map.Entry<String, String> entry : strings.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue());
+            }
+            output.writeInt(doubles.size());
+            for (Map.Entry<String, Double> entry : doubles.entrySet()) {
+                writeString(output, entry.getKey());
+                output.writeDouble(entry.getValue());
+            }
+
+            output.close();
+            output = null;
+
+            if (!temporary.renameTo(file)) {
+                _dirty = true;
+            }
+        } catch (IOException e) {
+            _dirty = true;
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    /**
+     * Length prefixed UTF-8, unlike writeUTF it has no 64KB limit, which
+     * string values of a container may exceed.
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input, long limit) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid string length " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing useful to do
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+
+import com.google.android.gms.analytics.GoogleAnalytics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the Google Analytics local dispatch period from the app and device
+ * state. Each dispatch wakes up the radio, so hits are batched for longer
+ * while the app is in the background, the network is metered or the battery
+ * is low. Purchases and fatal exceptions are dispatched right away instead.
+ *
+ * State changes arrive on the UI thread, so they only request an update,
+ * which the dispatch thread runs without the caller waiting for room in the
+ * dispatch queue. Requests made before it runs are coalesced into one.
+ */
+public class DispatchScheduler {
+
+    private static final int DEFAULT_DISPATCH_PERIOD = 20;
+    private static final int MAX_DISPATCH_PERIOD = 30 * 60;
+
+    private static final int BACKGROUND_FACTOR = 6;
+    private static final int METERED_FACTOR = 3;
+    private static final int LOW_BATTERY_FACTOR = 4;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private static final String PRODUCT_ACTION_FIELD = "&pa";
+    private static final String EXCEPTION_FATAL_FIELD = "&exf";
+
+    private final Context _context;
+    private final HitDispatcher _dispatcher;
+    private final AtomicInteger _queuedDispatches = new AtomicInteger();
+    private final AtomicBoolean _updatePending = new AtomicBoolean();
+
+    private volatile int _baseDispatchPeriod = DEFAULT_DISPATCH_PERIOD;
+    private volatile boolean _inBackground;
+    private boolean _receiverRegistered;
+    private boolean _closed;
+    private int _appliedDispatchPeriod = -1;
+
+    private final Runnable _update = new Runnable() {
+        @Override
+        public void run() {
+            _updatePending.set(false);
+            update();
+        }
+    };
+
+    private final BroadcastReceiver _deviceStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            requestUpdate();
+        }
+    };
+
+    private final Runnable _dispatchLocalHits = new Runnable() {
+        @Override
+        public void run() {
+            // Split carts queue several critical hits, only the last one dispatches
+            if (_queuedDispatches.decrementAndGet() == 0) {
+                GoogleAnalytics.getInstance(_context).dispatchLocalHits();
+            }
+        }
+    };
+
+    public DispatchScheduler(Context context, HitDispatcher dispatcher) {
+        _context = context.getApplicationContext();
+        _dispatcher = dispatcher;
+    }
+
+    /**
+     * The period used in the foreground on an unmetered network, the other
+     * states multiply it. Zero or less turns automatic dispatching off.
+     */
+    public void setBaseDispatchPeriod(int seconds) {
+        _baseDispatchPeriod = seconds;
+        requestUpdate();
+    }
+
+    public void setInBackground(boolean inBackground) {
+        _inBackground = inBackground;
+        requestUpdate();
+    }
+
+    private void requestUpdate() {
+        if (_updatePending.compareAndSet(false, true)) {
+            _dispatcher.runUnordered(_update);
+        }
+    }
+
+    /**
+     * Recomputes the dispatch period and applies it if it changed. Called on
+     * the dispatch thread, since it may initialize the SDK.
+     */
+    public synchronized void update() {
+        if (_closed) {
+            return;
+        }
+
+        if (!_receiverRegistered) {
+            _receiverRegistered = true;
+
+            IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+            filter.addAction(Intent.ACTION_BATTERY_LOW);
+            filter.addAction(Intent.ACTION_BATTERY_OKAY);
+            _context.registerReceiver(_deviceStateReceiver, filter);
+        }
+
+        int baseDispatchPeriod = _baseDispatchPeriod;
+        int period = baseDispatchPeriod;
+        if (period > 0) {
+            if (_inBackground) {
+                period *= BACKGROUND_FACTOR;
+            }
+            if (isNetworkMetered()) {
+                period *= METERED_FACTOR;
+            }
+            if (isBatteryLow()) {
+                period *= LOW_BATTERY_FACTOR;
+            }
+            period = Math.min(period, Math.max(MAX_DISPATCH_PERIOD, baseDispatchPeriod));
+        }
+
+        if (period != _appliedDispatchPeriod) {
+            _appliedDispatchPeriod = period;
+            GoogleAnalytics.getInstance(_context).setLocalDispatchPeriod(period);
+        }
+    }
+
+    /**
+     * Dispatches right away after a purchase or a fatal exception.
+     */
+    public void onHitQueued(Map<String, String> hit) {
+        if (hit.containsKey(PRODUCT_ACTION_FIELD) || "1".equals(hit.get(EXCEPTION_FATAL_FIELD))) {
+            _queuedDispatches.incrementAndGet();
+            _dispatcher.run(_dispatchLocalHits);
+        }
+    }
+
+    /**
+     * Dispatches the hits stored by Google Analytics once every hit queued so
+     * far has reached it, then runs done on the dispatch thread.
+     */
+    public void dispatchNow(final Runnable done) {
+        _dispatcher.run(new Runnable() {
+            @Override
+            public void run() {
+                GoogleAnalytics.getInstance(_context).dispatchLocalHits();
+                done.run();
+            }
+        });
+    }
+
+    /**
+     * Stops listening for device state changes.
+     */
+    public synchronized void close() {
+        _closed = true;
+
+        if (_receiverRegistered) {
+            _receiverRegistered = false;
+            _context.unregisterReceiver(_deviceStateReceiver);
+        }
+    }
+
+    private boolean isNetworkMetered() {
+        try {
+            ConnectivityManager connectivity =
+                (ConnectivityManager) _context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            return connectivity != null && connectivity.isActiveNetworkMetered();
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
+    private boolean isBatteryLow() {
+        // Sticky broadcast, read without registering a receiver
+        Intent battery = _context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        if (status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL) {
+            return false;
+        }
+
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale <= LOW_BATTERY_PERCENT;
+    }
+}
@@ -1,6 +1,11 @@
 package com.idehub.GoogleAnalyticsBridge;
 
 import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.SparseArray;
 
 import com.google.android.gms.analytics.GoogleAnalytics;
 import com.google.android.gms.analytics.HitBuilders;
@@ -8,295 +13,862 @@ import com.google.android.gms.analytics.Tracker;
 import com.google.android.gms.analytics.ecommerce.Product;
 import com.google.android.gms.analytics.ecommerce.ProductAction;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Contains logic for calling Google Analytics library methods
  */
 public class GA {
 
-    private static final int LOCAL_DISPATCH_PERIOD = 20;
+    private static final String JOURNAL_FILE_NAME = "GoogleAnalyticsBridge.journal";
 
-    private Context _context;
-    private Map<String, Tracker> _trackers;
+    static final String SCREEN_NAME_FIELD = "&cd";
+    static final String USER_ID_FIELD = "&uid";
+    static final String CUSTOM_DIMENSION_FIELD_PREFIX = "&cd";
+    private static final String CLIENT_ID_FIELD = "&cid";
+
+    // Hits are limited to 8192 bytes and 200 products, the rest of the
+    // payload gets a generous share of the byte limit
+    private static final int MAX_PRODUCTS_PER_HIT = 200;
+    private static final int MAX_PRODUCTS_PAYLOAD_SIZE = 6144;
+
+    private static final String HIT_TYPE_FIELD = "&t";
+    private static final String EVENT_CATEGORY_FIELD = "&ec";
+    private static final String TIMING_CATEGORY_FIELD = "&utc";
 
-    public GA(Context context) {
+    // Rate limit categories for hits which do not have a category of their own
+    private static final String SCREEN_VIEW_CATEGORY = "screenview";
+    private static final String EXCEPTION_CATEGORY = "exception";
+    private static final String SOCIAL_CATEGORY = "social";
+
+    private Context _context;
+    private ConcurrentMap<String, Tracker> _trackers;
+    private volatile TrackerEntry _lastTracker;
+    private HitDispatcher _dispatcher;
+    private GoogleHitSink.TrackerProvider _trackerProvider;
+    private HitSink _googleSink;
+    private HitCoalescer _coalescer;
+    private HandlerThread _flushThread;
+    private Handler _flushHandler;
+    private DispatchScheduler _scheduler;
+    private ConcurrentMap<String, List<String>> _trackerContexts;
+    // Every field set per tracker, cleared ones as null, replayed into a new hit sink
+    private ConcurrentMap<String, Map<String, String>> _trackerFields;
+    private ConcurrentMap<String, HitFilter> _filters;
+    private ConcurrentMap<String, String[]> _trackerGroups;
+    private TimerTable _timers;
+    private ConcurrentMap<String, ScreenBuffer> _screenBuffers;
+    private ImpressionCollector _impressions;
+
+    public GA(Context context, BridgeMetrics metrics) {
         _context = context;
-        _trackers = new HashMap<String, Tracker>();
+        _trackers = new ConcurrentHashMap<String, Tracker>();
+        _trackerContexts = new ConcurrentHashMap<String, List<String>>();
+        _trackerFields = new ConcurrentHashMap<String, Map<String, String>>();
+        _filters = new ConcurrentHashMap<String, HitFilter>();
+        _trackerGroups = new ConcurrentHashMap<String, String[]>();
+        _timers = new TimerTable();
+        _screenBuffers = new ConcurrentHashMap<String, ScreenBuffer>();
+        // Trackers are only looked up on the dispatch thread, so the SDK is
+        // initialized there rather than on the thread of the first hit
+        _trackerProvider = new GoogleHitSink.TrackerProvider() {
+            @Override
+            public Tracker getTracker(String trackerId) {
+                return GA.this.getTracker(trackerId);
+            }
+        };
+        _googleSink = new GoogleHitSink(_trackerProvider);
+        _dispatcher = new HitDispatcher(
+                new HitJournal(new File(context.getFilesDir(), JOURNAL_FILE_NAME)),
+                metrics, _googleSink);
+        // Timed flushes and flushes triggered from the UI thread run here,
+        // sending a hit may block under the BLOCK overflow policy
+        _flushThread = new HandlerThread("GoogleAnalyticsBridge-flush");
+        _flushThread.start();
+        _flushHandler = new Handler(_flushThread.getLooper());
+        _coalescer = new HitCoalescer(_dispatcher, _flushHandler);
+        _scheduler = new DispatchScheduler(context, _dispatcher);
+        _impressions = new ImpressionCollector(new ImpressionCollector.Sender() {
+            @Override
+            public void send(String trackerId, Map<String, String> hit) {
+                if (isAllowed(trackerId, ImpressionCollector.IMPRESSION_CATEGORY)) {
+                    GA.this.send(trackerId, hit);
+                }
+            }
+        }, _flushHandler);
     }
 
-    private synchronized Tracker getTracker(String trackerId) {
-        if (!_trackers.containsKey(trackerId)) {
+    /**
+     * Lock-free on the hot path: the last used tracker is checked first, then
+     * the concurrent map. Only creating a tracker takes the lock, so each
+     * tracker is still initialized exactly once. Only called on the dispatch
+     * thread.
+     */
+    private Tracker getTracker(String trackerId) {
+        TrackerEntry last = _lastTracker;
+        if (last != null && last.trackerId.equals(trackerId)) {
+            return last.tracker;
+        }
+
+        Tracker tracker = _trackers.get(trackerId);
+        if (tracker == null) {
+            tracker = createTracker(trackerId);
+        }
+
+        _lastTracker = new TrackerEntry(trackerId, tracker);
+        return tracker;
+    }
+
+    synchronized Tracker createTracker(String trackerId) {
+        Tracker tracker = _trackers.get(trackerId);
+
+        if (tracker == null) {
             GoogleAnalytics analytics = getAnalyticsInstance();
-            analytics.setLocalDispatchPeriod(LOCAL_DISPATCH_PERIOD);
+            _scheduler.update();
 
-            Tracker tracker = analytics.newTracker(trackerId);
+            tracker = analytics.newTracker(trackerId);
             tracker.enableExceptionReporting(true);
 
             _trackers.put(trackerId, tracker);
         }
 
-        return _trackers.get(trackerId);
+        return tracker;
+    }
+
+    /**
+     * Checked before any hit is built, so sampled out or rate limited hits
+     * cost a map lookup at most.
+     */
+    private boolean isAllowed(String trackerId, String category) {
+        HitFilter filter = _filters.get(trackerId);
+        return filter == null || filter.allow(category);
+    }
+
+    private HitFilter getFilter(String trackerId) {
+        HitFilter filter = _filters.get(trackerId);
+
+        if (filter == null) {
+            HitFilter created = new HitFilter();
+            filter = _filters.putIfAbsent(trackerId, created);
+            if (filter == null) {
+                filter = created;
+            }
+        }
+
+        return filter;
+    }
+
+    HitDispatcher getDispatcher() {
+        return _dispatcher;
     }
 
     private GoogleAnalytics getAnalyticsInstance() {
         return GoogleAnalytics.getInstance(_context);
     }
 
-    public void trackScreenView(String trackerId, String screenName) {
-        Tracker tracker = getTracker(trackerId);
+    /**
+     * Sends a batch of already built hits. Hits carrying a screen name also update the tracker's current screen,
+     * the same way trackScreenView does.
+     */
+    public void trackBatch(String trackerId, List<Map<String, String>> hits) {
+        for (Map<String, String> hit : hits) {
+            String screenName = hit.get(SCREEN_NAME_FIELD);
+            if (screenName != null) {
+                openScreen(trackerId, screenName, null);
+            }
 
-        if (tracker != null) {
-            tracker.setScreenName(screenName);
-            tracker.send(new HitBuilders.ScreenViewBuilder().build());
+            if (!isAllowed(trackerId, getCategory(hit))) {
+                continue;
+            }
+
+            if (screenName != null) {
+                set(trackerId, SCREEN_NAME_FIELD, screenName);
+            }
+
+            send(trackerId, hit);
         }
     }
 
-    public void trackEvent(String trackerId, String category,
-            String action, Optional<String> label, Optional<Integer> value) {
+    /**
+     * Sends a built hit, to every tracker of the group if trackerId is a group.
+     * The hit map is shared by the group's trackers, so it is made read-only.
+     */
+    private void send(String trackerId, Map<String, String> hit) {
+        String[] group = _trackerGroups.get(trackerId);
+
+        if (group == null) {
+            _coalescer.send(trackerId, hit);
+        } else {
+            Map<String, String> sharedHit = Collections.unmodifiableMap(hit);
+            String category = getCategory(hit);
+
+            for (String memberId : group) {
+                if (isAllowed(memberId, category)) {
+                    _coalescer.send(memberId, sharedHit);
+                }
+            }
+        }
+
+        _scheduler.onHitQueued(hit);
+    }
+
+    private void set(String trackerId, String field, String value) {
+        String[] group = _trackerGroups.get(trackerId);
+
+        if (group == null) {
+            setField(trackerId, field, value);
+        } else {
+            for (String memberId : group) {
+                setField(memberId, field, value);
+            }
+        }
+    }
 
-        Tracker tracker = getTracker(trackerId);
+    private void setField(String trackerId, String field, String value) {
+        Map<String, String> fields = _trackerFields.get(trackerId);
+
+        if (fields == null) {
+            fields = new ConcurrentHashMap<String, String>();
+            Map<String, String> existing = _trackerFields.putIfAbsent(trackerId, fields);
+            if (existing != null) {
+                fields = existing;
+            }
+        }
+
+        // Concurrent maps take no null values, a cleared field is kept as an
+        // empty string and cleared again on replay
+        fields.put(field, value != null ? value : "");
+        _coalescer.onTrackerChanged(trackerId);
+        _dispatcher.set(trackerId, field, value);
+    }
 
-        if (tracker != null) {
-            HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
-                .setCategory(category)
-                .setAction(action);
+    /**
+     * Runs the action with the tracker, or each tracker of the group, on the
+     * dispatch thread, after the hits queued before it.
+     */
+    private void withTracker(final String trackerId, final TrackerAction action) {
+        String[] group = _trackerGroups.get(trackerId);
+
+        if (group == null) {
+            _coalescer.onTrackerChanged(trackerId);
+        } else {
+            for (String memberId : group) {
+                _coalescer.onTrackerChanged(memberId);
+            }
+        }
 
-            if (label.isPresent()) {
-                hit.setLabel(label.get());
+        _dispatcher.run(new Runnable() {
+            @Override
+            public void run() {
+                String[] group = _trackerGroups.get(trackerId);
+
+                if (group == null) {
+                    action.run(trackerId, getTracker(trackerId));
+                } else {
+                    for (String memberId : group) {
+                        action.run(memberId, getTracker(memberId));
+                    }
+                }
             }
+        });
+    }
 
-            if (value.isPresent()) {
-                hit.setValue(value.get());
+    private void withAnalytics(final AnalyticsAction action) {
+        _dispatcher.run(new Runnable() {
+            @Override
+            public void run() {
+                action.run(getAnalyticsInstance());
             }
+        });
+    }
+
+    private String getCategory(Map<String, String> hit) {
+        String category = hit.get(EVENT_CATEGORY_FIELD);
+
+        if (category == null) {
+            category = hit.get(TIMING_CATEGORY_FIELD);
+        }
+
+        return category != null ? category : hit.get(HIT_TYPE_FIELD);
+    }
 
-            tracker.send(hit.build());
+    public void trackScreenView(String trackerId, String screenName) {
+        openScreen(trackerId, screenName, null);
+
+        if (!isAllowed(trackerId, SCREEN_VIEW_CATEGORY)) {
+            return;
         }
+
+        set(trackerId, SCREEN_NAME_FIELD, screenName);
+        send(trackerId, new HitBuilders.ScreenViewBuilder()
+            .set(SCREEN_NAME_FIELD, screenName)
+            .build());
+    }
+
+    public void trackEvent(String trackerId, String category,
+            String action, String label, boolean hasValue, int value) {
+
+        if (!isAllowed(trackerId, category)) {
+            return;
+        }
+
+        HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
+            .setCategory(category)
+            .setAction(action);
+
+        if (label != null) {
+            hit.setLabel(label);
+        }
+
+        if (hasValue) {
+            hit.setValue(value);
+        }
+
+        send(trackerId, hit.build());
     }
 
     public void trackTiming(String trackerId, String category,
-            Double value, Optional<String> name, Optional<String> label) {
+            Double value, String name, String label) {
 
-        Tracker tracker = getTracker(trackerId);
+        // Rounded rather than truncated, the hit only holds whole milliseconds
+        trackTiming(trackerId, category, Math.round(value), name, label);
+    }
 
-        if (tracker != null) {
-            HitBuilders.TimingBuilder hit = new HitBuilders.TimingBuilder()
-                .setCategory(category)
-                .setValue(value.longValue());
+    private void trackTiming(String trackerId, String category,
+            long milliseconds, String name, String label) {
 
-            if (name.isPresent()) {
-                hit.setVariable(name.get());
-            }
+        if (!isAllowed(trackerId, category)) {
+            return;
+        }
 
-            if (label.isPresent()) {
-                hit.setLabel(label.get());
-            }
+        HitBuilders.TimingBuilder hit = new HitBuilders.TimingBuilder()
+            .setCategory(category)
+            .setValue(milliseconds);
+
+        if (name != null) {
+            hit.setVariable(name);
+        }
+
+        if (label != null) {
+            hit.setLabel(label);
+        }
+
+        send(trackerId, hit.build());
+    }
+
+    /**
+     * Opens a native timer, so durations are measured without JavaScript
+     * timer skew. Starting an open timer again restarts it.
+     */
+    public void startTiming(String key) {
+        _timers.start(key, elapsedRealtimeNanos());
+    }
+
+    /**
+     * Closes the timer and tracks how long it was open. Does nothing if the
+     * timer was not started.
+     */
+    public void endTiming(String trackerId, String key,
+            String category, String name, String label) {
+
+        long nanos = _timers.stop(key, elapsedRealtimeNanos());
+
+        if (nanos >= 0) {
+            trackTiming(trackerId, category, (nanos + 500000) / 1000000, name, label);
+        }
+    }
 
-            tracker.send(hit.build());
+    private static long elapsedRealtimeNanos() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
         }
+        return System.nanoTime();
     }
 
-    public void trackPurchaseEvent(String trackerId, Product product,
+    public void trackPurchaseEvent(String trackerId, final Product product,
             ProductAction transaction, String eventCategory, String eventAction) {
 
         // This is the same as multi purchase events, only with one product in the
-        // list
-        List<Product> products = new ArrayList<Product>(1);
-        products.add(product);
+        // list, which never needs to be split
+        ProductSource products = new ProductSource() {
+            @Override
+            public int size() {
+                return 1;
+            }
+
+            @Override
+            public Product get(int index) {
+                return product;
+            }
+
+            @Override
+            public int getPayloadSize() {
+                return 0;
+            }
+        };
 
-        trackMultiProductsPurchaseEvent(trackerId, products, transaction, eventCategory, eventAction);
+        trackMultiProductsPurchaseEvent(trackerId, products, transaction, null,
+                eventCategory, eventAction);
     }
 
     public void trackMultiProductsPurchaseEvent(String trackerId,
-            List<Product> products, ProductAction transaction,
+            ProductSource products, ProductAction transaction, String transactionId,
             String eventCategory, String eventAction) {
 
         trackMultiProductsPurchaseEventWithCustomDimensionValues(
-                trackerId, products, transaction, eventCategory, eventAction,
-                new HashMap());
+                trackerId, products, transaction, transactionId, eventCategory,
+                eventAction, null);
     }
 
+    /**
+     * Products are added to the hit as they are read from the source. Carts
+     * too large for a single hit are split across several hits sharing the
+     * transaction id; only the first one carries the transaction totals, so
+     * revenue is not counted twice.
+     */
     public void trackMultiProductsPurchaseEventWithCustomDimensionValues(
-            String trackerId, List<Product> productList, ProductAction transaction,
-            String eventCategory, String eventAction, Map<Integer, String> dimensionIndexValues) {
+            String trackerId, ProductSource products, ProductAction transaction,
+            String transactionId, String eventCategory, String eventAction,
+            SparseArray<String> dimensionIndexValues) {
 
-        Tracker tracker = getTracker(trackerId);
+        if (!isAllowed(trackerId, eventCategory)) {
+            return;
+        }
 
-        if (tracker != null) {
-            HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
-                .setProductAction(transaction)
-                .setCategory(eventCategory)
-                .setAction(eventAction);
+        HitBuilders.EventBuilder hit = createPurchaseHit(transaction,
+                eventCategory, eventAction, dimensionIndexValues);
+        int hitProducts = 0;
+        int hitPayloadSize = 0;
 
-            for (Product product : productList) {
-                hit.addProduct(product);
-            }
+        for (int index = 0; index < products.size(); index++) {
+            Product product = products.get(index);
+            int payloadSize = products.getPayloadSize();
+
+            if (hitProducts > 0 && (hitProducts == MAX_PRODUCTS_PER_HIT
+                    || hitPayloadSize + payloadSize > MAX_PRODUCTS_PAYLOAD_SIZE)) {
 
-            for (Integer index : dimensionIndexValues.keySet()) {
-                String value = dimensionIndexValues.get(index);
-                hit.setCustomDimension(index, value);
+                send(trackerId, hit.build());
+
+                ProductAction continuation = new ProductAction(ProductAction.ACTION_PURCHASE)
+                    .setTransactionId(transactionId);
+                hit = createPurchaseHit(continuation, eventCategory, eventAction,
+                        dimensionIndexValues);
+                hitProducts = 0;
+                hitPayloadSize = 0;
             }
 
-            tracker.send(hit.build());
+            hit.addProduct(product);
+            hitProducts++;
+            hitPayloadSize += payloadSize;
         }
+
+        send(trackerId, hit.build());
     }
 
-    public void trackException(String trackerId, String error, Boolean fatal) {
-        Tracker tracker = getTracker(trackerId);
+    private HitBuilders.EventBuilder createPurchaseHit(ProductAction transaction,
+            String eventCategory, String eventAction, SparseArray<String> dimensionIndexValues) {
 
-        if (tracker != null) {
-            HitBuilders.ExceptionBuilder hit = new HitBuilders.ExceptionBuilder()
-                .setDescription(error)
-                .setFatal(fatal);
+        HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
+            .setProductAction(transaction)
+            .setCategory(eventCategory)
+            .setAction(eventAction);
 
-            tracker.send(hit.build());
+        setCustomDimensions(hit, dimensionIndexValues);
+
+        return hit;
+    }
+
+    public void trackException(String trackerId, String error, Boolean fatal) {
+        if (!isAllowed(trackerId, EXCEPTION_CATEGORY)) {
+            return;
         }
+
+        HitBuilders.ExceptionBuilder hit = new HitBuilders.ExceptionBuilder()
+            .setDescription(error)
+            .setFatal(fatal);
+
+        send(trackerId, hit.build());
     }
 
     public void setUser(String trackerId, String userId) {
-        Tracker tracker = getTracker(trackerId);
+        set(trackerId, USER_ID_FIELD, userId);
+    }
+
+    /**
+     * Sets dimensions and fields which are sent with every following hit of
+     * the tracker, replacing any previous context. The values are set on the
+     * Tracker itself, so hits do not need to carry them.
+     */
+    public void setTrackerContext(String trackerId,
+            SparseArray<String> dimensionIndexValues, Map<String, String> fields) {
+
+        clearTrackerContext(trackerId);
+
+        List<String> keys = new ArrayList<String>(dimensionIndexValues.size() + fields.size());
+
+        for (int i = 0; i < dimensionIndexValues.size(); i++) {
+            String key = CUSTOM_DIMENSION_FIELD_PREFIX + dimensionIndexValues.keyAt(i);
+            set(trackerId, key, dimensionIndexValues.valueAt(i));
+            keys.add(key);
+        }
 
-        if (tracker != null) {
-            tracker.set("&uid", userId);
+        for (String key : fields.keySet()) {
+            set(trackerId, key, fields.get(key));
+            keys.add(key);
         }
+
+        _trackerContexts.put(trackerId, keys);
     }
 
-    public void allowAdvertisingIdCollection(String trackerId, Boolean enabled) {
-        Tracker tracker = getTracker(trackerId);
+    public void clearTrackerContext(String trackerId) {
+        List<String> keys = _trackerContexts.remove(trackerId);
 
-        if (tracker != null) {
-            tracker.enableAdvertisingIdCollection(enabled);
+        if (keys != null) {
+            for (String key : keys) {
+                // Setting a null value removes the field from the tracker
+                set(trackerId, key, null);
+            }
         }
     }
 
+    public void allowAdvertisingIdCollection(String trackerId, final Boolean enabled) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                tracker.enableAdvertisingIdCollection(enabled);
+            }
+        });
+    }
+
     public void trackSocialInteraction(String trackerId, String network, String action, String targetUrl) {
-        Tracker tracker = getTracker(trackerId);
+        if (!isAllowed(trackerId, SOCIAL_CATEGORY)) {
+            return;
+        }
 
-        if (tracker != null) {
-            HitBuilders.SocialBuilder hit = new HitBuilders.SocialBuilder()
-                .setNetwork(network)
-                .setAction(action)
-                .setTarget(targetUrl);
+        HitBuilders.SocialBuilder hit = new HitBuilders.SocialBuilder()
+            .setNetwork(network)
+            .setAction(action)
+            .setTarget(targetUrl);
 
-                tracker.send(hit.build());
-        }
+        send(trackerId, hit.build());
     }
 
     public void trackScreenViewWithCustomDimensionValues(String trackerId,
-            String screenName, Map<Integer, String> dimensionIndexValues) {
+            String screenName, SparseArray<String> dimensionIndexValues) {
+
+        openScreen(trackerId, screenName, dimensionIndexValues);
 
-        Tracker tracker = getTracker(trackerId);
+        if (!isAllowed(trackerId, SCREEN_VIEW_CATEGORY)) {
+            return;
+        }
 
-        if (tracker != null) {
-            tracker.setScreenName(screenName);
+        set(trackerId, SCREEN_NAME_FIELD, screenName);
 
-            HitBuilders.ScreenViewBuilder hit = new HitBuilders.ScreenViewBuilder();
+        HitBuilders.ScreenViewBuilder hit = new HitBuilders.ScreenViewBuilder();
+        hit.set(SCREEN_NAME_FIELD, screenName);
 
-            for (Integer index : dimensionIndexValues.keySet()) {
-                String value = dimensionIndexValues.get(index);
-                hit.setCustomDimension(index, value);
-            }
+        setCustomDimensions(hit, dimensionIndexValues);
 
-            tracker.send(hit.build());
-        }
+        send(trackerId, hit.build());
     }
 
     public void trackEventWithCustomDimensionValues(String trackerId,
-            String category, String action, Optional<String> label,
-            Optional<Integer> value,    Map<Integer, String> dimensionIndexValues) {
+            String category, String action, String label,
+            boolean hasValue, int value, SparseArray<String> dimensionIndexValues) {
 
-        Tracker tracker = getTracker(trackerId);
+        if (!isAllowed(trackerId, category)) {
+            return;
+        }
 
-        if (tracker != null) {
-            HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
-                .setCategory(category)
-                .setAction(action);
+        HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
+            .setCategory(category)
+            .setAction(action);
 
-            if (label.isPresent()) {
-                hit.setLabel(label.get());
-            }
+        if (label != null) {
+            hit.setLabel(label);
+        }
+
+        if (hasValue) {
+            hit.setValue(value);
+        }
 
-            if (value.isPresent()) {
-                hit.setValue(value.get());
+        setCustomDimensions(hit, dimensionIndexValues);
+
+        send(trackerId, hit.build());
+    }
+
+    private void setCustomDimensions(HitBuilders.HitBuilder<?> hit,
+            SparseArray<String> dimensionIndexValues) {
+
+        if (dimensionIndexValues != null) {
+            for (int i = 0; i < dimensionIndexValues.size(); i++) {
+                hit.setCustomDimension(dimensionIndexValues.keyAt(i), dimensionIndexValues.valueAt(i));
             }
+        }
+    }
 
-            for (Integer index : dimensionIndexValues.keySet()) {
-                String dimValue = dimensionIndexValues.get(index);
-                hit.setCustomDimension(index, dimValue);
+    /**
+     * Sampling is done by the bridge's own pre-filter rather than the SDK, so
+     * sampled out hits are dropped before they are built. The decision is
+     * based on the tracker's client id, so each client stays in or out, but
+     * it is made by HitFilter's own hash and not the SDK's algorithm.
+     */
+    public void setSampleRate(String trackerId, final Double sampleRate) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                getFilter(trackerId).setSampleRate(tracker.get(CLIENT_ID_FIELD), sampleRate);
             }
+        });
+    }
+
+    public void setRateLimit(String trackerId, Double hitsPerSecond, Integer burstSize) {
+        getFilter(trackerId).setRateLimit(hitsPerSecond, burstSize);
+    }
 
-            tracker.send(hit.build());
+    /**
+     * Makes groupId an alias for the given trackers: hits tracked with it are
+     * built once and sent to each of them. An empty list removes the group.
+     */
+    public void setTrackerGroup(String groupId, List<String> trackerIds) {
+        if (trackerIds.isEmpty()) {
+            _trackerGroups.remove(groupId);
+        } else {
+            _trackerGroups.put(groupId, trackerIds.toArray(new String[trackerIds.size()]));
         }
     }
 
-    public void setSampleRate(String trackerId, Double sampleRate) {
-        Tracker tracker = getTracker(trackerId);
+    /**
+     * Identical hits tracked within windowMillis of each other are only sent
+     * once. With merge, events with a value are sent once with the values
+     * added up instead.
+     */
+    public void setCoalescingWindow(Integer windowMillis, Boolean merge) {
+        _coalescer.setWindow(windowMillis, merge);
+    }
 
-        if (tracker != null) {
-            tracker.setSampleRate(sampleRate);
+    /**
+     * Sends hits to the given sink instead of Google Analytics, or back to
+     * Google Analytics when it is null. Fields set so far, like the screen
+     * name or user id, are set on the new sink right after the switch, since
+     * the previous sink was the only one to get them.
+     */
+    public void setHitSink(HitSink sink) {
+        final HitSink target = sink != null ? sink : _googleSink;
+        final Map<String, Map<String, String>> fields = new HashMap<String, Map<String, String>>();
+
+        for (Map.Entry<String, Map<String, String>> entry : _trackerFields.entrySet()) {
+            fields.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
         }
+
+        _dispatcher.setSink(target);
+        // Queued right behind the switch, fields set later follow in order
+        _dispatcher.run(new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<String, Map<String, String>> tracker : fields.entrySet()) {
+                    for (Map.Entry<String, String> field : tracker.getValue().entrySet()) {
+                        String value = field.getValue();
+                        target.set(tracker.getKey(), field.getKey(), value.isEmpty() ? null : value);
+                    }
+                }
+            }
+        });
     }
 
-    public void setDryRun(Boolean enabled) {
-        GoogleAnalytics analytics = getAnalyticsInstance();
+    /**
+     * Looks up trackers for sinks which read their fields, only use it on the
+     * dispatch thread.
+     */
+    GoogleHitSink.TrackerProvider getTrackerProvider() {
+        return _trackerProvider;
+    }
 
-        if (analytics != null) {
-            analytics.setDryRun(enabled);
-        }
+    public void setHitQueueOverflowPolicy(HitDispatcher.OverflowPolicy overflowPolicy) {
+        _dispatcher.setOverflowPolicy(overflowPolicy);
+    }
+
+    public void setDryRun(final Boolean enabled) {
+        withAnalytics(new AnalyticsAction() {
+            @Override
+            public void run(GoogleAnalytics analytics) {
+                analytics.setDryRun(enabled);
+            }
+        });
     }
 
+    /**
+     * Sets the foreground dispatch period; it is lengthened in the background,
+     * on metered networks and on low battery.
+     */
     public void setDispatchInterval(Integer intervalInSeconds) {
-        GoogleAnalytics analytics = getAnalyticsInstance();
+        _scheduler.setBaseDispatchPeriod(intervalInSeconds);
+    }
 
-        if (analytics != null) {
-            analytics.setLocalDispatchPeriod(intervalInSeconds);
+    /**
+     * Called from lifecycle callbacks on the UI thread, which must not wait
+     * for room in the dispatch queue: flushing is posted to the flush thread
+     * and the scheduler only requests an update.
+     */
+    public void setInBackground(boolean inBackground) {
+        if (inBackground) {
+            // Held events would be lost if the process is killed in the background
+            _flushHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    _coalescer.flush(true);
+                    _impressions.flush();
+                    for (Map.Entry<String, ScreenBuffer> buffer : _screenBuffers.entrySet()) {
+                        sendSummary(buffer.getKey(), buffer.getValue().drain());
+                    }
+                }
+            });
         }
+
+        _scheduler.setInBackground(inBackground);
     }
 
-    public void setTrackExceptions(String trackerId, Boolean enabled) {
-        Tracker tracker = getTracker(trackerId);
+    public void incrementScreenCounter(String trackerId, String name, long amount) {
+        getScreenBuffer(trackerId).increment(name, amount);
+    }
 
-        if (tracker != null) {
-            tracker.enableExceptionReporting(enabled);
-        }
+    public void updateScreenMaximum(String trackerId, String name, long value) {
+        getScreenBuffer(trackerId).maximum(name, value);
+    }
+
+    public void addScreenImpression(String trackerId, String listName, String itemId) {
+        getScreenBuffer(trackerId).addImpression(listName, itemId);
     }
 
-    public void setAnonymizeIp(String trackerId, Boolean enabled) {
-        Tracker tracker = getTracker(trackerId);
+    private ScreenBuffer getScreenBuffer(String trackerId) {
+        ScreenBuffer buffer = _screenBuffers.get(trackerId);
 
-        if (tracker != null) {
-            tracker.setAnonymizeIp(enabled);
+        if (buffer == null) {
+            ScreenBuffer created = new ScreenBuffer();
+            buffer = _screenBuffers.putIfAbsent(trackerId, created);
+            if (buffer == null) {
+                buffer = created;
+            }
         }
+
+        return buffer;
     }
 
-    public void setOptOut(Boolean enabled) {
-        GoogleAnalytics analytics = getAnalyticsInstance();
+    /**
+     * Sends the impressions and the summary of the tracker's previous screen.
+     * Done even when the screen view itself is sampled out, the screen has
+     * changed either way.
+     */
+    private void openScreen(String trackerId, String screenName, SparseArray<String> dimensionIndexValues) {
+        _impressions.reset(trackerId);
+        sendSummary(trackerId, getScreenBuffer(trackerId).open(screenName, dimensionIndexValues));
+    }
+
+    private void sendSummary(String trackerId, List<Map<String, String>> summary) {
+        if (summary.isEmpty() || !isAllowed(trackerId, ScreenBuffer.SUMMARY_CATEGORY)) {
+            return;
+        }
 
-        if (analytics != null) {
-            analytics.setAppOptOut(enabled);
+        for (Map<String, String> hit : summary) {
+            send(trackerId, hit);
         }
     }
 
-    public void setAppName(String trackerId, String appName) {
-        Tracker tracker = getTracker(trackerId);
+    /**
+     * Dispatches every hit tracked so far, then runs done.
+     */
+    public void dispatchNow(Runnable done) {
+        _coalescer.flush(true);
+        _impressions.flush();
+        _scheduler.dispatchNow(done);
+    }
 
-        if (tracker != null) {
-            tracker.setAppName(appName);
-        }
+    /**
+     * Sends everything still held back, then stops the dispatch thread and
+     * closes the journal. Called when the React Native instance goes away,
+     * before a reload creates a new GA.
+     */
+    public void shutdown() {
+        // After the flushes already posted, and off the caller's thread
+        _flushHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                _impressions.flush();
+                _coalescer.flush(true);
+                for (Map.Entry<String, ScreenBuffer> buffer : _screenBuffers.entrySet()) {
+                    sendSummary(buffer.getKey(), buffer.getValue().drain());
+                }
+
+                _scheduler.close();
+                _dispatcher.shutdown();
+                _flushThread.quit();
+            }
+        });
+    }
+
+    public void setTrackExceptions(String trackerId, final Boolean enabled) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                tracker.enableExceptionReporting(enabled);
+            }
+        });
     }
 
-    public void setAppVersion(String trackerId, String appVersion) {
-        Tracker tracker = getTracker(trackerId);
+    public void setAnonymizeIp(String trackerId, final Boolean enabled) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                tracker.setAnonymizeIp(enabled);
+            }
+        });
+    }
 
-        if (tracker != null) {
-            tracker.setAppVersion(appVersion);
-        }
+    public void setOptOut(final Boolean enabled) {
+        withAnalytics(new AnalyticsAction() {
+            @Override
+            public void run(GoogleAnalytics analytics) {
+                analytics.setAppOptOut(enabled);
+            }
+        });
+    }
+
+    public void setAppName(String trackerId, final String appName) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                tracker.setAppName(appName);
+            }
+        });
+    }
+
+    public void setAppVersion(String trackerId, final String appVersion) {
+        withTracker(trackerId, new TrackerAction() {
+            @Override
+            public void run(String trackerId, Tracker tracker) {
+                tracker.setAppVersion(appVersion);
+            }
+        });
     }
 
 
+    /**
+     * Collects a product list impression, to be sent packed together with
+     * others. Products already seen in the list on this screen are ignored.
+     */
+    public void trackImpression(String trackerId, String listName, String productId,
+            Product product, int payloadSize) {
+
+        _impressions.add(trackerId, listName, productId, product, payloadSize);
+    }
+
     public ProductAction createPurchaseTransaction(String id, Double tax,
             Double revenue, Double shipping, String couponCode, String affiliation) {
 
@@ -328,4 +900,22 @@ public class GA {
 
         return product;
     }
+
+    private interface TrackerAction {
+        void run(String trackerId, Tracker tracker);
+    }
+
+    private interface AnalyticsAction {
+        void run(GoogleAnalytics analytics);
+    }
+
+    private static final class TrackerEntry {
+        final String trackerId;
+        final Tracker tracker;
+
+        TrackerEntry(String trackerId, Tracker tracker) {
+            this.trackerId = trackerId;
+            this.tracker = tracker;
+        }
+    }
 }
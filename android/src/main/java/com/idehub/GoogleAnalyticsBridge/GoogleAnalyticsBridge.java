@@ -1,11 +1,19 @@
 package com.idehub.GoogleAnalyticsBridge;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import com.google.android.gms.analytics.GoogleAnalytics;
 import com.google.android.gms.analytics.HitBuilders;
@@ -13,21 +21,87 @@ import com.google.android.gms.analytics.Tracker;
 import com.google.android.gms.analytics.ecommerce.Product;
 import com.google.android.gms.analytics.ecommerce.ProductAction;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
+public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule implements LifecycleEventListener {
         private final String _trackingId;
-        private final GA _ga;
+        private volatile GA _ga;
+        private volatile boolean _inBackground;
+        private final BridgeMetrics _metrics;
+
+        private static final String METRICS_EVENT = "GoogleAnalyticsBridgeMetrics";
+        private final Handler _metricsHandler = new Handler(Looper.getMainLooper());
+        private volatile long _metricsIntervalMillis;
+
+        // Only touched from the native modules thread, which runs all @ReactMethods
+        private final SparseArray<String> _dimensions = new SparseArray<String>(16);
+        private final Map<String, int[]> _dimensionSchemas = new HashMap<String, int[]>();
+
+        // Payload estimate for products: "&pr123xx=" and "&", and the width of a number
+        private static final int PRODUCT_FIELD_OVERHEAD = 10;
+        private static final int PRODUCT_NUMBER_SIZE = 12;
+
+        private final Runnable _reportMetrics = new Runnable() {
+            @Override
+            public void run() {
+                long intervalMillis = _metricsIntervalMillis;
+                if (intervalMillis > 0 && getReactApplicationContext().hasActiveCatalystInstance()) {
+                    getReactApplicationContext()
+                        .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                        .emit(METRICS_EVENT, _metrics.toWritableMap(getDispatcher()));
+                    _metricsHandler.postDelayed(this, intervalMillis);
+                }
+            }
+        };
 
         public GoogleAnalyticsBridge(ReactApplicationContext reactContext,
-                String trackingId) {
+                String trackingId, BridgeMetrics metrics) {
 
             super(reactContext);
-            _ga = new GA(reactContext);
+            _metrics = metrics;
             _trackingId = trackingId;
+            reactContext.addLifecycleEventListener(this);
+        }
+
+        /**
+         * GA is created on first use, so constructing the module during app
+         * startup does no analytics work. The SDK itself is only initialized on
+         * GA's dispatch thread.
+         */
+        private GA getGA() {
+            GA ga = _ga;
+
+            if (ga == null) {
+                synchronized (this) {
+                    ga = _ga;
+                    if (ga == null) {
+                        ga = new GA(getReactApplicationContext(), _metrics);
+                        ga.setInBackground(_inBackground);
+                        _ga = ga;
+                    }
+                }
+            }
+
+            return ga;
+        }
+
+        private HitDispatcher getDispatcher() {
+            GA ga = _ga;
+            return ga != null ? ga.getDispatcher() : null;
+        }
+
+        private void setInBackground(boolean inBackground) {
+            _inBackground = inBackground;
+
+            // Lifecycle callbacks run on the UI thread, they must not create GA
+            GA ga = _ga;
+            if (ga != null) {
+                ga.setInBackground(inBackground);
+            }
         }
 
         @Override
@@ -39,6 +113,35 @@ public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
             return GoogleAnalytics.getInstance(getReactApplicationContext());
         }
 
+        @Override
+        public void onHostResume() {
+            setInBackground(false);
+        }
+
+        @Override
+        public void onHostPause() {
+            setInBackground(true);
+        }
+
+        @Override
+        public void onHostDestroy() {
+            setInBackground(true);
+        }
+
+        @Override
+        public void onCatalystInstanceDestroy() {
+            _metricsIntervalMillis = 0;
+            _metricsHandler.removeCallbacks(_reportMetrics);
+            getReactApplicationContext().removeLifecycleEventListener(this);
+
+            // The next instance gets a GA of its own, which must not share the
+            // journal with this one's dispatch thread
+            GA ga = _ga;
+            if (ga != null) {
+                ga.shutdown();
+            }
+        }
+
         @Override
         public Map<String, Object> getConstants() {
                 final Map<String, Object> constants = new HashMap<>();
@@ -46,150 +149,540 @@ public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
                 return constants;
         }
 
+        @ReactMethod
+        public void trackBatch(String trackerId, ReadableArray hitArray) {
+            long start = _metrics.startCall("trackBatch");
+            List<Map<String, String>> hits = new ArrayList<Map<String, String>>(hitArray.size());
+
+            for (int index = 0; index < hitArray.size(); index++) {
+                Map<String, String> hit = getHit(hitArray.getMap(index));
+                if (hit != null) {
+                    hits.add(hit);
+                }
+            }
+
+            getGA().trackBatch(trackerId, hits);
+            _metrics.endDecode(start);
+        }
+
+        @ReactMethod
+        public void trackEncodedBatch(String trackerId, String encodedHits) {
+            long start = _metrics.startCall("trackEncodedBatch");
+            List<Map<String, String>> hits;
+
+            try {
+                hits = HitDecoder.decode(encodedHits);
+            } catch (IllegalArgumentException e) {
+                // A malformed batch is dropped as a whole
+                _metrics.endDecode(start);
+                return;
+            }
+
+            getGA().trackBatch(trackerId, hits);
+            _metrics.endDecode(start);
+        }
+
         @ReactMethod
         public void trackScreenView(String trackerId, String screenName){
-            _ga.trackScreenView(trackerId, screenName);
+            long start = _metrics.startCall("trackScreenView");
+            getGA().trackScreenView(trackerId, screenName);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackEvent(String trackerId, String category, String action, ReadableMap optionalValues) {
+            long start = _metrics.startCall("trackEvent");
 
-            Optional<String> label = optionalValues.hasKey("label") ?
-                Optional.ofNullable(optionalValues.getString("label")) : Optional.emptyString();
+            String label = getOptionalString(optionalValues, "label");
+            boolean hasValue = optionalValues.hasKey("value");
+            int value = hasValue ? optionalValues.getInt("value") : 0;
 
-            Optional<Integer> value = optionalValues.hasKey("value") ?
-                Optional.ofNullable(optionalValues.getInt("value")) : Optional.emptyInteger();
-
-            _ga.trackEvent(trackerId, category, action, label, value);
+            getGA().trackEvent(trackerId, category, action, label, hasValue, value);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackTiming(String trackerId, String category, Double value, ReadableMap optionalValues){
+            long start = _metrics.startCall("trackTiming");
 
-            Optional<String> name = optionalValues.hasKey("name") ?
-                Optional.ofNullable(optionalValues.getString("name")) : Optional.emptyString();
+            String name = getOptionalString(optionalValues, "name");
+            String label = getOptionalString(optionalValues, "label");
 
-            Optional<String> label = optionalValues.hasKey("label") ?
-                Optional.ofNullable(optionalValues.getString("label")) : Optional.emptyString();
+            getGA().trackTiming(trackerId, category, value, name, label);
+            _metrics.endDecode(start);
+        }
 
-            _ga.trackTiming(trackerId, category, value, name, label);
+        @ReactMethod
+        public void startTiming(String key){
+            _metrics.startCall("startTiming");
+            getGA().startTiming(key);
+        }
+
+        @ReactMethod
+        public void endTiming(String trackerId, String key, String category, ReadableMap optionalValues){
+            long start = _metrics.startCall("endTiming");
+
+            String name = getOptionalString(optionalValues, "name");
+            String label = getOptionalString(optionalValues, "label");
+
+            getGA().endTiming(trackerId, key, category, name, label);
+            _metrics.endDecode(start);
+        }
+
+        @ReactMethod
+        public void incrementScreenCounter(String trackerId, String name, Double amount){
+            _metrics.startCall("incrementScreenCounter");
+            getGA().incrementScreenCounter(trackerId, name, Math.round(amount));
+        }
+
+        @ReactMethod
+        public void updateScreenMaximum(String trackerId, String name, Double value){
+            _metrics.startCall("updateScreenMaximum");
+            getGA().updateScreenMaximum(trackerId, name, Math.round(value));
+        }
+
+        @ReactMethod
+        public void addScreenImpression(String trackerId, String listName, String itemId){
+            _metrics.startCall("addScreenImpression");
+            getGA().addScreenImpression(trackerId, listName, itemId);
         }
 
         @ReactMethod
         public void trackPurchaseEvent(String trackerId, ReadableMap productMap, ReadableMap transactionMap, String eventCategory, String eventAction){
+            long start = _metrics.startCall("trackPurchaseEvent");
 
             Product product = getPurchaseProduct(productMap);
             ProductAction transaction = getPurchaseTransaction(transactionMap);
 
-            _ga.trackPurchaseEvent(trackerId, product,
+            getGA().trackPurchaseEvent(trackerId, product,
                     transaction, eventCategory, eventAction);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackMultiProductsPurchaseEvent(String trackerId, ReadableArray productArray, ReadableMap transactionMap, String eventCategory, String eventAction) {
+            long start = _metrics.startCall("trackMultiProductsPurchaseEvent");
 
             ProductAction transaction = getPurchaseTransaction(transactionMap);
-            List<Product> productList = getPurchaseProducts(productArray);
 
-            _ga.trackMultiProductsPurchaseEvent(trackerId, productList, transaction,
-                    eventCategory, eventAction);
+            getGA().trackMultiProductsPurchaseEvent(trackerId, getPurchaseProducts(productArray),
+                    transaction, transactionMap.getString("id"), eventCategory, eventAction);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackMultiProductsPurchaseEventWithCustomDimensionValues(String trackerId, ReadableArray productArray, ReadableMap transactionMap, String eventCategory, String eventAction, ReadableMap dimensionIndexValues) {
+            long start = _metrics.startCall("trackMultiProductsPurchaseEventWithCustomDimensionValues");
 
             ProductAction transaction = getPurchaseTransaction(transactionMap);
-            List<Product> productList = getPurchaseProducts(productArray);
-            Map<Integer, String> dimensions = getDimensionIndices(dimensionIndexValues);
+            SparseArray<String> dimensions = getDimensionIndices(dimensionIndexValues);
+
+            getGA().trackMultiProductsPurchaseEventWithCustomDimensionValues(
+                    trackerId, getPurchaseProducts(productArray), transaction,
+                    transactionMap.getString("id"), eventCategory, eventAction, dimensions);
+            _metrics.endDecode(start);
+        }
+
+        @ReactMethod
+        public void trackImpressions(String trackerId, String listName, ReadableArray productArray) {
+            long start = _metrics.startCall("trackImpressions");
+
+            for (int index = 0; index < productArray.size(); index++) {
+                ReadableMap product = productArray.getMap(index);
+
+                String id = product.getString("id");
+                String name = getOptionalString(product, "name");
+                String brand = getOptionalString(product, "brand");
+                String variant = getOptionalString(product, "variant");
+                String category = getOptionalString(product, "category");
+
+                Product impression = new Product().setId(id);
+                if (name != null) {
+                    impression.setName(name);
+                }
+                if (brand != null) {
+                    impression.setBrand(brand);
+                }
+                if (variant != null) {
+                    impression.setVariant(variant);
+                }
+                if (category != null) {
+                    impression.setCategory(category);
+                }
+                if (product.hasKey("price")) {
+                    impression.setPrice(product.getDouble("price"));
+                }
+                if (product.hasKey("position")) {
+                    impression.setPosition(product.getInt("position"));
+                }
+
+                int payloadSize = PRODUCT_FIELD_OVERHEAD * 7 + length(id) + length(name)
+                    + length(brand) + length(variant) + length(category) + PRODUCT_NUMBER_SIZE * 2;
 
-            _ga.trackMultiProductsPurchaseEventWithCustomDimensionValues(
-                    trackerId, productList, transaction, eventCategory,
-                    eventAction, dimensions);
+                getGA().trackImpression(trackerId, listName, id, impression, payloadSize);
+            }
+
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackException(String trackerId, String error, Boolean fatal) {
-            _ga.trackException(trackerId, error, fatal);
+            long start = _metrics.startCall("trackException");
+            getGA().trackException(trackerId, error, fatal);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void setUser(String trackerId, String userId) {
-            _ga.setUser(trackerId, userId);
+            _metrics.startCall("setUser");
+            getGA().setUser(trackerId, userId);
+        }
+
+        @ReactMethod
+        public void setTrackerContext(String trackerId, ReadableMap dimensionIndexValues, ReadableMap fields) {
+            _metrics.startCall("setTrackerContext");
+            Map<String, String> fieldValues = new HashMap<String, String>();
+
+            ReadableMapKeySetIterator iterator = fields.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String field = iterator.nextKey();
+
+                // Field values are strings to the SDK, numbers and booleans are
+                // written the way JS would print them
+                switch (fields.getType(field)) {
+                    case String:
+                        fieldValues.put(field, fields.getString(field));
+                        break;
+                    case Number:
+                        fieldValues.put(field, formatNumber(fields.getDouble(field)));
+                        break;
+                    case Boolean:
+                        fieldValues.put(field, Boolean.toString(fields.getBoolean(field)));
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            getGA().setTrackerContext(trackerId, getDimensionIndices(dimensionIndexValues), fieldValues);
+        }
+
+        @ReactMethod
+        public void clearTrackerContext(String trackerId) {
+            _metrics.startCall("clearTrackerContext");
+            getGA().clearTrackerContext(trackerId);
         }
 
         @ReactMethod
         public void allowIDFA(String trackerId, Boolean enabled) {
-            _ga.allowAdvertisingIdCollection(trackerId, enabled);
+            _metrics.startCall("allowIDFA");
+            getGA().allowAdvertisingIdCollection(trackerId, enabled);
         }
 
         @ReactMethod
         public void trackSocialInteraction(String trackerId, String network,
                 String action, String targetUrl) {
+            long start = _metrics.startCall("trackSocialInteraction");
 
-            _ga.trackSocialInteraction(trackerId, network, action, targetUrl);
+            getGA().trackSocialInteraction(trackerId, network, action, targetUrl);
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackScreenViewWithCustomDimensionValues(String trackerId, String screenName, ReadableMap dimensionIndexValues) {
+            long start = _metrics.startCall("trackScreenViewWithCustomDimensionValues");
 
-            _ga.trackScreenViewWithCustomDimensionValues(trackerId, screenName,
+            getGA().trackScreenViewWithCustomDimensionValues(trackerId, screenName,
                     getDimensionIndices(dimensionIndexValues));
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void trackEventWithCustomDimensionValues(String trackerId,
                 String category, String action, ReadableMap optionalValues,
                 ReadableMap dimensionIndexValues) {
+            long start = _metrics.startCall("trackEventWithCustomDimensionValues");
+
+            String label = getOptionalString(optionalValues, "label");
+            boolean hasValue = optionalValues.hasKey("value");
+            int value = hasValue ? optionalValues.getInt("value") : 0;
+
+            getGA().trackEventWithCustomDimensionValues(trackerId, category, action,
+                    label, hasValue, value, getDimensionIndices(dimensionIndexValues));
+            _metrics.endDecode(start);
+        }
 
-            Optional<String> label = optionalValues.hasKey("label") ?
-                Optional.ofNullable(optionalValues.getString("label")) : Optional.emptyString();
+        @ReactMethod
+        public void registerTrackerGroup(String groupId, ReadableArray trackerIdArray) {
+            _metrics.startCall("registerTrackerGroup");
+            List<String> trackerIds = new ArrayList<String>(trackerIdArray.size());
+
+            for (int index = 0; index < trackerIdArray.size(); index++) {
+                trackerIds.add(trackerIdArray.getString(index));
+            }
+
+            getGA().setTrackerGroup(groupId, trackerIds);
+        }
+
+        @ReactMethod
+        public void registerDimensionSchema(String trackerId, ReadableArray dimensionIndices) {
+            _metrics.startCall("registerDimensionSchema");
+            int[] schema = new int[dimensionIndices.size()];
+
+            for (int index = 0; index < schema.length; index++) {
+                schema[index] = dimensionIndices.getInt(index);
+            }
+
+            _dimensionSchemas.put(trackerId, schema);
+        }
 
-            Optional<Integer> value = optionalValues.hasKey("value") ?
-                Optional.ofNullable(optionalValues.getInt("value")) : Optional.emptyInteger();
+        @ReactMethod
+        public void trackScreenViewWithCustomDimensionArray(String trackerId, String screenName, ReadableArray dimensionValues) {
+            long start = _metrics.startCall("trackScreenViewWithCustomDimensionArray");
 
-            _ga.trackEventWithCustomDimensionValues(trackerId, category, action,
-                    label, value, getDimensionIndices(dimensionIndexValues));
+            getGA().trackScreenViewWithCustomDimensionValues(trackerId, screenName,
+                    getSchemaDimensions(trackerId, dimensionValues));
+            _metrics.endDecode(start);
+        }
+
+        @ReactMethod
+        public void trackEventWithCustomDimensionArray(String trackerId,
+                String category, String action, ReadableMap optionalValues,
+                ReadableArray dimensionValues) {
+            long start = _metrics.startCall("trackEventWithCustomDimensionArray");
+
+            String label = getOptionalString(optionalValues, "label");
+            boolean hasValue = optionalValues.hasKey("value");
+            int value = hasValue ? optionalValues.getInt("value") : 0;
+
+            getGA().trackEventWithCustomDimensionValues(trackerId, category, action,
+                    label, hasValue, value, getSchemaDimensions(trackerId, dimensionValues));
+            _metrics.endDecode(start);
         }
 
         @ReactMethod
         public void setSamplingRate(String trackerId, Double sampleRate){
-            _ga.setSampleRate(trackerId, sampleRate);
+            _metrics.startCall("setSamplingRate");
+            getGA().setSampleRate(trackerId, sampleRate);
+        }
+
+        @ReactMethod
+        public void setRateLimit(String trackerId, Double hitsPerSecond, Integer burstSize){
+            _metrics.startCall("setRateLimit");
+            getGA().setRateLimit(trackerId, hitsPerSecond, burstSize);
         }
 
         @ReactMethod
         public void setDryRun(Boolean enabled){
-            _ga.setDryRun(enabled);
+            _metrics.startCall("setDryRun");
+            getGA().setDryRun(enabled);
         }
 
         @ReactMethod
         public void setDispatchInterval(Integer intervalInSeconds){
-            _ga.setDispatchInterval(intervalInSeconds);
+            _metrics.startCall("setDispatchInterval");
+            getGA().setDispatchInterval(intervalInSeconds);
+        }
+
+        @ReactMethod
+        public void dispatchNow(final Promise promise){
+            _metrics.startCall("dispatchNow");
+            getGA().dispatchNow(new Runnable() {
+                @Override
+                public void run() {
+                    promise.resolve(true);
+                }
+            });
+        }
+
+        /**
+         * Sends hits to a local file or socket as Measurement Protocol payloads,
+         * for load testing, or back to Google Analytics.
+         */
+        @ReactMethod
+        public void setHitSink(ReadableMap options){
+            _metrics.startCall("setHitSink");
+            String type = getOptionalString(options, "type");
+
+            if ("file".equals(type)) {
+                getGA().setHitSink(LocalHitSink.toFile(new File(options.getString("path"))));
+            } else if ("socket".equals(type)) {
+                getGA().setHitSink(LocalHitSink.toSocket(options.getString("host"), options.getInt("port")));
+            } else if ("batch".equals(type)) {
+                boolean gzip = options.hasKey("gzip") && options.getBoolean("gzip");
+                long maxDelayMillis = options.hasKey("maxDelaySeconds")
+                    ? (long) (options.getDouble("maxDelaySeconds") * 1000)
+                    : BatchUploadHitSink.DEFAULT_MAX_DELAY_MILLIS;
+                GA ga = getGA();
+                ga.setHitSink(new BatchUploadHitSink(getReactApplicationContext(), ga.getTrackerProvider(),
+                        getOptionalString(options, "endpoint"), gzip, maxDelayMillis));
+            } else {
+                getGA().setHitSink(null);
+            }
+        }
+
+        @ReactMethod
+        public void setHitQueueOverflowPolicy(String overflowPolicy){
+            _metrics.startCall("setHitQueueOverflowPolicy");
+            switch (overflowPolicy) {
+                case "dropNewest":
+                    getGA().setHitQueueOverflowPolicy(HitDispatcher.OverflowPolicy.DROP_NEWEST);
+                    break;
+                case "block":
+                    getGA().setHitQueueOverflowPolicy(HitDispatcher.OverflowPolicy.BLOCK);
+                    break;
+                default:
+                    getGA().setHitQueueOverflowPolicy(HitDispatcher.OverflowPolicy.DROP_OLDEST);
+                    break;
+            }
+        }
+
+        @ReactMethod
+        public void setHitCoalescingWindow(Integer windowMillis, String mode){
+            _metrics.startCall("setHitCoalescingWindow");
+            getGA().setCoalescingWindow(windowMillis, "merge".equals(mode));
         }
 
         @ReactMethod
         public void setTrackUncaughtExceptions(String trackerId, Boolean enabled){
-            _ga.setTrackExceptions(trackerId, enabled);
+            _metrics.startCall("setTrackUncaughtExceptions");
+            getGA().setTrackExceptions(trackerId, enabled);
         }
 
 
         @ReactMethod
         public void setAnonymizeIp(String trackerId, Boolean enabled){
-            _ga.setAnonymizeIp(trackerId, enabled);
+            _metrics.startCall("setAnonymizeIp");
+            getGA().setAnonymizeIp(trackerId, enabled);
         }
 
         @ReactMethod
         public void setOptOut(Boolean enabled){
-            _ga.setOptOut(enabled);
+            _metrics.startCall("setOptOut");
+            getGA().setOptOut(enabled);
         }
 
         @ReactMethod
         public void setAppName(String trackerId, String appName){
-            _ga.setAppName(trackerId, appName);
+            _metrics.startCall("setAppName");
+            getGA().setAppName(trackerId, appName);
         }
 
         @ReactMethod
         public void setAppVersion(String trackerId, String appVersion){
-            _ga.setAppVersion(trackerId, appVersion);
+            _metrics.startCall("setAppVersion");
+            getGA().setAppVersion(trackerId, appVersion);
+        }
+
+        @ReactMethod
+        public void getBridgeMetrics(Promise promise){
+            _metrics.startCall("getBridgeMetrics");
+            promise.resolve(_metrics.toWritableMap(getDispatcher()));
+        }
+
+        /**
+         * Emits the metrics as a GoogleAnalyticsBridgeMetrics event every
+         * intervalInSeconds. Zero or less stops the reports.
+         */
+        @ReactMethod
+        public void setMetricsReportInterval(Integer intervalInSeconds){
+            _metrics.startCall("setMetricsReportInterval");
+            _metricsIntervalMillis = intervalInSeconds > 0 ? intervalInSeconds * 1000L : 0;
+
+            _metricsHandler.removeCallbacks(_reportMetrics);
+            if (_metricsIntervalMillis > 0) {
+                _metricsHandler.postDelayed(_reportMetrics, _metricsIntervalMillis);
+            }
+        }
+
+        /**
+         * Builds the hit described by a trackBatch entry. The "type" key selects
+         * the hit kind, the remaining keys mirror the arguments of the
+         * corresponding track method. Entries without a type, or of an unknown
+         * type, are skipped.
+         */
+        private Map<String, String> getHit(ReadableMap hit) {
+            if (hit == null || !hit.hasKey("type") || hit.getType("type") != ReadableType.String) {
+                return null;
+            }
+
+            switch (hit.getString("type")) {
+                case "screen": {
+                    HitBuilders.ScreenViewBuilder builder = new HitBuilders.ScreenViewBuilder();
+                    builder.set(GA.SCREEN_NAME_FIELD, hit.getString("screenName"));
+                    setCustomDimensions(builder, hit);
+                    return builder.build();
+                }
+                case "event": {
+                    HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
+                        .setCategory(hit.getString("category"))
+                        .setAction(hit.getString("action"));
+
+                    if (hit.hasKey("label")) {
+                        builder.setLabel(hit.getString("label"));
+                    }
+
+                    if (hit.hasKey("value")) {
+                        builder.setValue(hit.getInt("value"));
+                    }
+
+                    setCustomDimensions(builder, hit);
+                    return builder.build();
+                }
+                case "timing": {
+                    HitBuilders.TimingBuilder builder = new HitBuilders.TimingBuilder()
+                        .setCategory(hit.getString("category"))
+                        .setValue(Math.round(hit.getDouble("value")));
+
+                    if (hit.hasKey("name")) {
+                        builder.setVariable(hit.getString("name"));
+                    }
+
+                    if (hit.hasKey("label")) {
+                        builder.setLabel(hit.getString("label"));
+                    }
+
+                    return builder.build();
+                }
+                case "exception": {
+                    return new HitBuilders.ExceptionBuilder()
+                        .setDescription(hit.getString("error"))
+                        .setFatal(hit.hasKey("fatal") && hit.getBoolean("fatal"))
+                        .build();
+                }
+                case "social": {
+                    return new HitBuilders.SocialBuilder()
+                        .setNetwork(hit.getString("network"))
+                        .setAction(hit.getString("action"))
+                        .setTarget(hit.getString("targetUrl"))
+                        .build();
+                }
+                case "purchase": {
+                    HitBuilders.EventBuilder builder = new HitBuilders.EventBuilder()
+                        .setProductAction(getPurchaseTransaction(hit.getMap("transaction")))
+                        .setCategory(hit.hasKey("eventCategory") ? hit.getString("eventCategory") : "Ecommerce")
+                        .setAction(hit.hasKey("eventAction") ? hit.getString("eventAction") : "Purchase");
+
+                    ReadableArray products = hit.getArray("products");
+                    for (int index = 0; index < products.size(); index++) {
+                        builder.addProduct(getPurchaseProduct(products.getMap(index)));
+                    }
+
+                    setCustomDimensions(builder, hit);
+                    return builder.build();
+                }
+                default:
+                    return null;
+            }
+        }
+
+        private void setCustomDimensions(HitBuilders.HitBuilder<?> builder, ReadableMap hit) {
+            if (hit.hasKey("customDimensions")) {
+                SparseArray<String> dimensions = getDimensionIndices(hit.getMap("customDimensions"));
+                for (int i = 0; i < dimensions.size(); i++) {
+                    builder.setCustomDimension(dimensions.keyAt(i), dimensions.valueAt(i));
+                }
+            }
         }
 
         private ProductAction getPurchaseTransaction(ReadableMap transaction) {
@@ -204,15 +697,67 @@ public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
                 return productAction;
         }
 
-        private List<Product> getPurchaseProducts(ReadableArray products) {
-            List<Product> productList = new ArrayList<Product>(products.size());
+        /**
+         * Decodes products lazily, one map at a time, as GA adds them to the hit.
+         */
+        ProductSource getPurchaseProducts(final ReadableArray products) {
+            return new ProductSource() {
+                private int _payloadSize;
+
+                @Override
+                public int size() {
+                    return products.size();
+                }
+
+                @Override
+                public Product get(int index) {
+                    ReadableMap product = products.getMap(index);
+
+                    String id = product.getString("id");
+                    String name = product.getString("name");
+                    String brand = product.getString("brand");
+                    String variant = product.getString("variant");
+                    String category = product.getString("category");
+                    String couponCode = getOptionalString(product, "couponCode");
+
+                    Product ecommerceProduct = new Product()
+                         .setId(id)
+                         .setName(name)
+                         .setBrand(brand)
+                         .setPrice(product.getDouble("price"))
+                         .setQuantity(product.getInt("quantity"))
+                         .setVariant(variant)
+                         .setCategory(category);
+
+                    if (couponCode != null) {
+                         ecommerceProduct.setCouponCode(couponCode);
+                    }
+
+                    _payloadSize = PRODUCT_FIELD_OVERHEAD * 8 + length(id) + length(name)
+                        + length(brand) + length(variant) + length(category)
+                        + length(couponCode) + PRODUCT_NUMBER_SIZE * 2;
+
+                    return ecommerceProduct;
+                }
 
-            for (int index = 0; index < products.size(); index++) {
-                    ReadableMap productMap = products.getMap(index);
-                    productList.add(this.getPurchaseProduct(productMap));
+                @Override
+                public int getPayloadSize() {
+                    return _payloadSize;
+                }
+            };
+        }
+
+        private static int length(String value) {
+            // Non ASCII characters are percent-encoded, so count them a few times
+            if (value == null) {
+                return 0;
             }
 
-            return productList;
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                length += value.charAt(i) < 0x80 ? 1 : 9;
+            }
+            return length;
         }
 
         private Product getPurchaseProduct(ReadableMap product) {
@@ -232,8 +777,18 @@ public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
                 return ecommerceProduct;
         }
 
-        private Map<Integer, String> getDimensionIndices(ReadableMap dimensionIndices) {
-            Map<Integer, String> dimensions = new HashMap<Integer, String>();
+        private String getOptionalString(ReadableMap map, String key) {
+            return map.hasKey(key) ? map.getString(key) : null;
+        }
+
+        /**
+         * Decodes custom dimensions into a reused, int keyed array. The result is
+         * only valid until the next call, GA copies it into the hit builder
+         * before returning.
+         */
+        SparseArray<String> getDimensionIndices(ReadableMap dimensionIndices) {
+            SparseArray<String> dimensions = _dimensions;
+            dimensions.clear();
 
             ReadableMapKeySetIterator iterator = dimensionIndices.keySetIterator();
             while (iterator.hasNextKey()) {
@@ -244,4 +799,43 @@ public class GoogleAnalyticsBridge extends ReactContextBaseJavaModule {
 
             return dimensions;
         }
+
+        /**
+         * Maps positional dimension values onto the indices registered with
+         * registerDimensionSchema. Null entries are skipped, so are values past
+         * the end of the schema.
+         */
+        private SparseArray<String> getSchemaDimensions(String trackerId, ReadableArray dimensionValues) {
+            SparseArray<String> dimensions = _dimensions;
+            dimensions.clear();
+
+            int[] schema = _dimensionSchemas.get(trackerId);
+            if (schema == null) {
+                return dimensions;
+            }
+
+            int count = Math.min(schema.length, dimensionValues.size());
+            for (int position = 0; position < count; position++) {
+                switch (dimensionValues.getType(position)) {
+                    case String:
+                        dimensions.put(schema[position], dimensionValues.getString(position));
+                        break;
+                    case Number:
+                        dimensions.put(schema[position], formatNumber(dimensionValues.getDouble(position)));
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            return dimensions;
+        }
+
+        /**
+         * Whole numbers without the trailing ".0" Java would add.
+         */
+        private static String formatNumber(double number) {
+            return number == Math.rint(number) && !Double.isInfinite(number)
+                    ? Long.toString((long) number) : Double.toString(number);
+        }
 }
@@ -26,9 +26,10 @@ public class GoogleAnalyticsBridgePackage implements ReactPackage {
     public List<NativeModule> createNativeModules(
             ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
+        BridgeMetrics metrics = new BridgeMetrics();
 
-        modules.add(new GoogleAnalyticsBridge(reactContext, _trackingId));
-        modules.add(new GoogleTagManagerBridge(reactContext));
+        modules.add(new GoogleAnalyticsBridge(reactContext, _trackingId, metrics));
+        modules.add(new GoogleTagManagerBridge(reactContext, metrics));
         
         return modules;
     }
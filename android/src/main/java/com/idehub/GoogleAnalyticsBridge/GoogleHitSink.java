@@ -0,0 +1,41 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.google.android.gms.analytics.Tracker;
+
+import java.util.Map;
+
+/**
+ * Sends hits through the Google Analytics SDK trackers.
+ */
+public class GoogleHitSink implements HitSink {
+
+    public interface TrackerProvider {
+        Tracker getTracker(String trackerId);
+    }
+
+    private final TrackerProvider _trackers;
+
+    public GoogleHitSink(TrackerProvider trackers) {
+        _trackers = trackers;
+    }
+
+    @Override
+    public void send(String trackerId, Map<String, String> hit) {
+        _trackers.getTracker(trackerId).send(hit);
+    }
+
+    @Override
+    public void set(String trackerId, String field, String value) {
+        _trackers.getTracker(trackerId).set(field, value);
+    }
+
+    @Override
+    public void flush() {
+        // The SDK dispatches on its own schedule
+    }
+
+    @Override
+    public void close() {
+        // Trackers stay usable, the sink may be switched back to
+    }
+}
@@ -1,108 +1,361 @@
 package com.idehub.GoogleAnalyticsBridge;
 
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
 import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.tagmanager.ContainerHolder;
 import com.google.android.gms.tagmanager.DataLayer;
 import com.google.android.gms.tagmanager.TagManager;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class GoogleTagManagerBridge extends ReactContextBaseJavaModule {
+public class GoogleTagManagerBridge extends ReactContextBaseJavaModule implements LifecycleEventListener {
 
-    public GoogleTagManagerBridge(ReactApplicationContext reactContext) {
+    public GoogleTagManagerBridge(ReactApplicationContext reactContext, BridgeMetrics metrics) {
         super(reactContext);
+        mMetrics = metrics;
+        reactContext.addLifecycleEventListener(this);
     }
 
 
     private final String E_CONTAINER_ALREADY_OPEN = "E_CONTAINER_ALREADY_OPEN";
-    private final String E_ONGOING_OPEN_OPERATION = "E_ONGOING_OPEN_OPERATION";
     private final String E_CONTAINER_NOT_OPENED = "E_CONTAINER_NOT_OPENED";
     private final String E_OPEN_CONTAINER_FAILED = "E_OPEN_CONTAINER_FAILED";
     private final String E_PUSH_EVENT_FAILED = "E_PUSH_EVENT_FAILED";
+    private final String E_VALUE_NOT_CACHED = "E_VALUE_NOT_CACHED";
+
+    private final String E_INVALID_VALUE_TYPE = "E_INVALID_VALUE_TYPE";
+
+    // The SDK does not refresh more often than every 15 minutes anyway
+    private static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MIN_LOAD_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private enum ContainerState {
+        CLOSED,
+        OPENING,
+        OPEN
+    }
+
+    private final AtomicReference<ContainerState> mState =
+        new AtomicReference<ContainerState>(ContainerState.CLOSED);
+    private volatile OpenAttempt mOpenAttempt;
+    private final Handler mRefreshHandler = new Handler(Looper.getMainLooper());
+    private final BridgeMetrics mMetrics;
+    private volatile String mContainerId;
+    // Only touched on the main thread, where load results arrive
+    private long mLoadRetryMillis;
 
-    private ContainerHolder mContainerHolder;
-    private Boolean openOperationInProgress = false;
-    private DataLayer mDatalayer;
+    private volatile ContainerHolder mContainerHolder;
+    private volatile ContainerSnapshot mSnapshot;
+    private volatile File mSnapshotFile;
+    // Set once the saved snapshot was read, also when there was none or it was invalid
+    private volatile boolean mSnapshotLoaded;
+    private volatile DataLayer mDatalayer;
+
+    private final Runnable mRefreshContainer = new Runnable() {
+        @Override
+        public void run() {
+            ContainerHolder holder = mContainerHolder;
+            if (holder != null) {
+                // Asynchronous, the new container arrives through the ContainerAvailableListener
+                holder.refresh();
+                mRefreshHandler.postDelayed(this, REFRESH_INTERVAL_MILLIS);
+            }
+        }
+    };
+
+    private final Runnable mRetryLoad = new Runnable() {
+        @Override
+        public void run() {
+            loadContainer(mContainerId, mOpenAttempt);
+        }
+    };
 
     @Override
     public String getName() {
         return "GoogleTagManagerBridge";
     }
 
+    /**
+     * Calls made while a load is in flight wait for that load instead of
+     * failing, and all of them are settled by its result. A call made after a
+     * failed load starts a new attempt, which the old result never settles.
+     */
     @ReactMethod
     public void openContainerWithId(final String containerId, final Promise promise){
-        if (mContainerHolder != null) {
+        mMetrics.startCall("openContainerWithId");
+        if (mState.get() == ContainerState.OPEN) {
             promise.reject(E_CONTAINER_ALREADY_OPEN, new Throwable("The container is already open."));
             return;
         }
 
-        if (openOperationInProgress) {
-            promise.reject(E_ONGOING_OPEN_OPERATION, new Throwable("Container open-operation already in progress."));
-            return;
+        // Values saved by the last run are served until the container is loaded,
+        // so with them the caller can start reading right away
+        if (!mSnapshotLoaded) {
+            File snapshotFile = new File(getReactApplicationContext().getFilesDir(),
+                    String.format("GoogleTagManagerBridge-%s.snapshot", containerId));
+            mSnapshot = ContainerSnapshot.load(snapshotFile);
+            mSnapshotFile = snapshotFile;
+            mSnapshotLoaded = true;
+        }
+
+        boolean resolved = mSnapshot != null;
+        if (resolved) {
+            promise.resolve(true);
+        }
+
+        if (mState.compareAndSet(ContainerState.CLOSED, ContainerState.OPENING)) {
+            OpenAttempt attempt = new OpenAttempt(containerId);
+            if (!resolved) {
+                attempt.promises.add(promise);
+            }
+            mOpenAttempt = attempt;
+            mContainerId = containerId;
+            loadContainer(containerId, attempt);
+        } else if (!resolved) {
+            OpenAttempt attempt = mOpenAttempt;
+            attempt.promises.add(promise);
+            if (attempt.succeeded != null) {
+                // The load finished between the checks above, settle the promise here
+                settleOpenPromises(attempt);
+            }
         }
+    }
 
+    private void loadContainer(final String containerId, final OpenAttempt attempt) {
         TagManager mTagManager = TagManager.getInstance(getReactApplicationContext());
         //using -1 here because it can't access raw in app
-        openOperationInProgress = true;
         PendingResult<ContainerHolder> pending = mTagManager.loadContainerPreferFresh(containerId, -1);
         pending.setResultCallback(new ResultCallback<ContainerHolder>() {
             @Override
             public void onResult(ContainerHolder containerHolder) {
                 if (containerHolder != null && containerHolder.getStatus().isSuccess()) {
                     mContainerHolder = containerHolder;
-                    promise.resolve(true);
+                    swapSnapshot(containerHolder);
+                    containerHolder.setContainerAvailableListener(new ContainerHolder.ContainerAvailableListener() {
+                        @Override
+                        public void onContainerAvailable(ContainerHolder holder, String containerVersion) {
+                            swapSnapshot(holder);
+                        }
+                    });
+                    attempt.succeeded = true;
+                    mState.set(ContainerState.OPEN);
+                    scheduleRefresh();
+                } else if (mSnapshot != null) {
+                    // Callers were already told the container is open and are
+                    // served the saved values, so keep loading rather than
+                    // failing them after the fact
+                    mLoadRetryMillis = Math.min(REFRESH_INTERVAL_MILLIS,
+                            Math.max(MIN_LOAD_RETRY_MILLIS, mLoadRetryMillis * 2));
+                    mRefreshHandler.postDelayed(mRetryLoad, mLoadRetryMillis);
+                    return;
                 } else {
-                    promise.reject(E_OPEN_CONTAINER_FAILED, new Throwable(String.format("Failed to open container. Does container with id %s exist?", containerId)));
+                    attempt.succeeded = false;
+                    mState.set(ContainerState.CLOSED);
                 }
-                openOperationInProgress = false;
+                settleOpenPromises(attempt);
             }
         }, 2000, TimeUnit.MILLISECONDS);
     }
 
+    private void settleOpenPromises(OpenAttempt attempt) {
+        Promise promise;
+        while ((promise = attempt.promises.poll()) != null) {
+            if (attempt.succeeded) {
+                promise.resolve(true);
+            } else {
+                promise.reject(E_OPEN_CONTAINER_FAILED, new Throwable(String.format("Failed to open container. Does container with id %s exist?", attempt.containerId)));
+            }
+        }
+    }
+
+    private void scheduleRefresh() {
+        mRefreshHandler.removeCallbacks(mRefreshContainer);
+        mRefreshHandler.postDelayed(mRefreshContainer, REFRESH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * A refreshed container gets a fresh snapshot, which reads the keys of the
+     * previous one from the new container so they stay cached and persisted.
+     */
+    private void swapSnapshot(ContainerHolder holder) {
+        mSnapshot = new ContainerSnapshot(holder.getContainer(), mSnapshot);
+        saveSnapshot();
+    }
+
+    private void saveSnapshot() {
+        final ContainerSnapshot snapshot = mSnapshot;
+        final File file = mSnapshotFile;
+
+        if (snapshot != null && file != null) {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    snapshot.save(file);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void onHostResume() {
+        if (mState.get() == ContainerState.OPEN) {
+            scheduleRefresh();
+        }
+    }
+
+    @Override
+    public void onHostPause() {
+        // No refreshes while in the background
+        mRefreshHandler.removeCallbacks(mRefreshContainer);
+        // Keeps keys first read during this session for the next cold start
+        saveSnapshot();
+    }
+
+    @Override
+    public void onHostDestroy() {
+        mRefreshHandler.removeCallbacks(mRefreshContainer);
+        mRefreshHandler.removeCallbacks(mRetryLoad);
+    }
+
     @ReactMethod
     public void booleanForKey(final String key, final Promise promise){
-        if (mContainerHolder != null && mContainerHolder.getContainer() != null) {
-            promise.resolve(mContainerHolder.getContainer().getBoolean(key));
+        mMetrics.startCall("booleanForKey");
+        ContainerSnapshot snapshot = mSnapshot;
+        Boolean value = snapshot != null ? snapshot.getBoolean(key) : null;
+        if (value != null) {
+            promise.resolve(value);
         } else {
-            promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
+            rejectMissingValue(snapshot, key, promise);
         }
     }
 
     @ReactMethod
     public void stringForKey(final String key, final Promise promise){
-        if (mContainerHolder != null && mContainerHolder.getContainer() != null) {
-            promise.resolve(mContainerHolder.getContainer().getString(key));
+        mMetrics.startCall("stringForKey");
+        ContainerSnapshot snapshot = mSnapshot;
+        String value = snapshot != null ? snapshot.getString(key) : null;
+        if (value != null) {
+            promise.resolve(value);
         } else {
-            promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
+            rejectMissingValue(snapshot, key, promise);
         }
     }
 
     @ReactMethod
     public void doubleForKey(final String key, final Promise promise){
-        if (mContainerHolder != null && mContainerHolder.getContainer() != null) {
-            promise.resolve(mContainerHolder.getContainer().getDouble(key));
+        mMetrics.startCall("doubleForKey");
+        ContainerSnapshot snapshot = mSnapshot;
+        Double value = snapshot != null ? snapshot.getDouble(key) : null;
+        if (value != null) {
+            promise.resolve(value);
         } else {
+            rejectMissingValue(snapshot, key, promise);
+        }
+    }
+
+    /**
+     * Like the single reads, rejects with E_VALUE_NOT_CACHED when a key is
+     * not in the saved snapshot served until the container has loaded.
+     */
+    @ReactMethod
+    public void getValuesForKeys(final ReadableMap keyTypes, final Promise promise){
+        mMetrics.startCall("getValuesForKeys");
+        ContainerSnapshot snapshot = mSnapshot;
+        if (snapshot == null) {
             promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
+            return;
+        }
+
+        WritableMap values = Arguments.createMap();
+        ReadableMapKeySetIterator iterator = keyTypes.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            String type = keyTypes.getString(key);
+
+            Object value;
+            switch (type) {
+                case "boolean":
+                    value = snapshot.getBoolean(key);
+                    if (value == null) {
+                        rejectMissingValue(snapshot, key, promise);
+                        return;
+                    }
+                    values.putBoolean(key, (Boolean) value);
+                    break;
+                case "string":
+                    value = snapshot.getString(key);
+                    if (value == null) {
+                        rejectMissingValue(snapshot, key, promise);
+                        return;
+                    }
+                    values.putString(key, (String) value);
+                    break;
+                case "double":
+                    value = snapshot.getDouble(key);
+                    if (value == null) {
+                        rejectMissingValue(snapshot, key, promise);
+                        return;
+                    }
+                    values.putDouble(key, (Double) value);
+                    break;
+                default:
+                    promise.reject(E_INVALID_VALUE_TYPE, new Throwable(String.format("Unknown type %s for key %s. Use boolean, string or double.", type, key)));
+                    return;
+            }
+        }
+
+        promise.resolve(values);
+    }
+
+    /**
+     * A loaded container has a value for every key, so a missing value means
+     * the container is not open yet or the key is not in the saved snapshot.
+     */
+    private void rejectMissingValue(ContainerSnapshot snapshot, String key, Promise promise) {
+        if (snapshot == null) {
+            promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
+        } else {
+            promise.reject(E_VALUE_NOT_CACHED, new Throwable(String.format("No saved value for key %s, the container is still loading.", key)));
         }
     }
 
+    /**
+     * Events go to the TagManager's data layer, which needs no loaded
+     * container, so they can be pushed while the container is still loading.
+     * Tags fire for them once it has loaded.
+     */
     @ReactMethod
     public void pushDataLayerEvent(ReadableMap dictionary, final Promise promise){
+        mMetrics.startCall("pushDataLayerEvent");
 
-      if (mContainerHolder != null && isValidMapToPushEvent(dictionary)) {
+      if (mState.get() != ContainerState.CLOSED && isValidMapToPushEvent(dictionary)) {
           getDataLayer().push(getMap(dictionary));
           promise.resolve(true);
       } else {
-          if (mContainerHolder == null) {
+          if (mState.get() == ContainerState.CLOSED) {
               promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
           } else {
               promise.reject(E_PUSH_EVENT_FAILED, new Throwable("Validation error, data must have a key \"event\" with valid event name"));
@@ -110,22 +363,110 @@ public class GoogleTagManagerBridge extends ReactContextBaseJavaModule {
       }
     }
 
+    /**
+     * Pushes several events with one call. Nothing is pushed unless every
+     * event is valid.
+     */
+    @ReactMethod
+    public void pushDataLayerEvents(ReadableArray dictionaries, final Promise promise){
+        mMetrics.startCall("pushDataLayerEvents");
+        if (mState.get() == ContainerState.CLOSED) {
+            promise.reject(E_CONTAINER_NOT_OPENED, new Throwable("The container has not been opened. You must call openContainerWithId(..)"));
+            return;
+        }
+
+        List<Map<String, Object>> events = new ArrayList<Map<String, Object>>(dictionaries.size());
+        for (int index = 0; index < dictionaries.size(); index++) {
+            ReadableMap dictionary = dictionaries.getMap(index);
+            if (!isValidMapToPushEvent(dictionary)) {
+                promise.reject(E_PUSH_EVENT_FAILED, new Throwable(String.format("Validation error, data at index %d must have a key \"event\" with valid event name", index)));
+                return;
+            }
+            events.add(getMap(dictionary));
+        }
+
+        DataLayer dataLayer = getDataLayer();
+        for (Map<String, Object> event : events) {
+            dataLayer.push(event);
+        }
+        promise.resolve(true);
+    }
+
     private boolean isValidMapToPushEvent(ReadableMap dictionary) {
-        return (dictionary != null && dictionary.getString("event") != null
+        return (dictionary != null && dictionary.hasKey("event")
+                && dictionary.getType("event") == ReadableType.String
                 && dictionary.getString("event").length() > 0);
     }
 
-    private Map<String,Object> getMap(ReadableMap dictionary) {
+    /**
+     * Converts to the types DataLayer expects, keeping numbers, booleans,
+     * nested maps and arrays instead of turning everything into strings.
+     */
+    Map<String,Object> getMap(ReadableMap dictionary) {
         Map<String, Object> map = new HashMap<>();
         ReadableMapKeySetIterator iterator = dictionary.keySetIterator();
         while (iterator.hasNextKey()) {
             String key = iterator.nextKey();
-            String value = dictionary.getString(key);
-            map.put(key, value);
+            switch (dictionary.getType(key)) {
+                case Null:
+                    map.put(key, null);
+                    break;
+                case Boolean:
+                    map.put(key, dictionary.getBoolean(key));
+                    break;
+                case Number:
+                    map.put(key, getNumber(dictionary.getDouble(key)));
+                    break;
+                case String:
+                    map.put(key, dictionary.getString(key));
+                    break;
+                case Map:
+                    map.put(key, getMap(dictionary.getMap(key)));
+                    break;
+                case Array:
+                    map.put(key, getList(dictionary.getArray(key)));
+                    break;
+            }
         }
         return map;
     }
 
+    private List<Object> getList(ReadableArray array) {
+        List<Object> list = new ArrayList<>(array.size());
+        for (int index = 0; index < array.size(); index++) {
+            switch (array.getType(index)) {
+                case Null:
+                    list.add(null);
+                    break;
+                case Boolean:
+                    list.add(array.getBoolean(index));
+                    break;
+                case Number:
+                    list.add(getNumber(array.getDouble(index)));
+                    break;
+                case String:
+                    list.add(array.getString(index));
+                    break;
+                case Map:
+                    list.add(getMap(array.getMap(index)));
+                    break;
+                case Array:
+                    list.add(getList(array.getArray(index)));
+                    break;
+            }
+        }
+        return list;
+    }
+
+    // JavaScript only has doubles; whole numbers are passed on as such so
+    // Tag Manager macros do not render them as "2.0"
+    private Object getNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+            return (long) value;
+        }
+        return value;
+    }
+
     private DataLayer getDataLayer() {
         if (mDatalayer == null) {
             TagManager tagManager = TagManager.getInstance(getReactApplicationContext());
@@ -133,4 +474,18 @@ public class GoogleTagManagerBridge extends ReactContextBaseJavaModule {
         }
         return mDatalayer;
     }
+
+    /**
+     * The promises waiting for one load, settled only by its own result.
+     */
+    private static final class OpenAttempt {
+        final String containerId;
+        final Queue<Promise> promises = new ConcurrentLinkedQueue<Promise>();
+        // Null until the load has finished
+        volatile Boolean succeeded;
+
+        OpenAttempt(String containerId) {
+            this.containerId = containerId;
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Drops hits identical to one sent within the last window milliseconds, as
+ * happens when a component re-renders and tracks the same screen or event
+ * again. In merge mode, events with a value are held for the window instead
+ * and the values of their duplicates are added up, so totals stay correct.
+ *
+ * Recent hits are remembered by a 64 bit fingerprint in a fixed size table,
+ * the oldest entry of a probe sequence is replaced when it is full. Memory
+ * stays constant however many distinct hits are tracked.
+ *
+ * Hits only carry their own fields, the screen name, tracker context and
+ * other fields set on the tracker are added later. So when a tracker's fields
+ * change, its held events are sent before the change and its recent hits are
+ * forgotten, and identical hits from different screens are both sent.
+ */
+public class HitCoalescer {
+
+    private static final int TABLE_SIZE = 64;
+    private static final int MAX_PROBES = 4;
+
+    private static final String HIT_TYPE_FIELD = "&t";
+    private static final String EVENT_HIT_TYPE = "event";
+    private static final String EVENT_VALUE_FIELD = "&ev";
+    private static final String PRODUCT_ACTION_FIELD = "&pa";
+
+    private final HitDispatcher _dispatcher;
+    private final Handler _handler;
+
+    private final long[] _fingerprints = new long[TABLE_SIZE];
+    private final long[] _times = new long[TABLE_SIZE];
+    private final String[] _trackerIds = new String[TABLE_SIZE];
+
+    // Held events in merge mode, by table slot
+    private final String[] _pendingTrackerIds = new String[TABLE_SIZE];
+    @SuppressWarnings("unchecked")
+    private final Map<String, String>[] _pendingHits = (Map<String, String>[]) new Map<?, ?>[TABLE_SIZE];
+    private final long[] _pendingValues = new long[TABLE_SIZE];
+    private int _pendingCount;
+
+    private volatile long _windowMillis;
+    private volatile boolean _merge;
+
+    private final Runnable _flushExpired = new Runnable() {
+        @Override
+        public void run() {
+            flush(false);
+        }
+    };
+
+    /**
+     * @param handler runs the expiry flushes; not the main thread's, since
+     *                sending may wait for room in the dispatch queue
+     */
+    public HitCoalescer(HitDispatcher dispatcher, Handler handler) {
+        _dispatcher = dispatcher;
+        _handler = handler;
+    }
+
+    /**
+     * @param windowMillis zero or less turns coalescing off
+     * @param merge whether to add up the values of duplicate events rather
+     *              than dropping them
+     */
+    public synchronized void setWindow(long windowMillis, boolean merge) {
+        flush(true);
+
+        _windowMillis = Math.max(0, windowMillis);
+        _merge = merge;
+        for (int slot = 0; slot < TABLE_SIZE; slot++) {
+            _fingerprints[slot] = 0;
+            _times[slot] = 0;
+            _trackerIds[slot] = null;
+        }
+    }
+
+    /**
+     * Sends the hit, unless it duplicates a recent one or is held for merging.
+     */
+    public void send(String trackerId, Map<String, String> hit) {
+        if (_windowMillis <= 0 || !offer(trackerId, hit)) {
+            _dispatcher.send(trackerId, hit);
+        }
+    }
+
+    /**
+     * Returns true if the hit was dropped or held.
+     */
+    private synchronized boolean offer(String trackerId, Map<String, String> hit) {
+        boolean mergeable = _merge && EVENT_HIT_TYPE.equals(hit.get(HIT_TYPE_FIELD))
+            && hit.containsKey(EVENT_VALUE_FIELD) && !hit.containsKey(PRODUCT_ACTION_FIELD);
+        long fingerprint = fingerprint(trackerId, hit, mergeable);
+        long now = SystemClock.elapsedRealtime();
+        long windowMillis = _windowMillis;
+
+        int home = (int) (fingerprint ^ (fingerprint >>> 32)) & (TABLE_SIZE - 1);
+        int target = home;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & (TABLE_SIZE - 1);
+
+            if (_fingerprints[slot] == fingerprint && now - _times[slot] < windowMillis) {
+                if (_pendingHits[slot] != null) {
+                    _pendingValues[slot] += parseValue(hit.get(EVENT_VALUE_FIELD));
+                    return true;
+                }
+                if (!mergeable) {
+                    return true;
+                }
+                target = slot;
+                break;
+            }
+
+            if (_times[slot] < _times[target]) {
+                target = slot;
+            }
+        }
+
+        // A held event being evicted has to go out now
+        sendPending(target);
+
+        _fingerprints[target] = fingerprint;
+        _times[target] = now;
+        _trackerIds[target] = trackerId;
+
+        if (!mergeable) {
+            return false;
+        }
+
+        _pendingTrackerIds[target] = trackerId;
+        _pendingHits[target] = hit;
+        _pendingValues[target] = parseValue(hit.get(EVENT_VALUE_FIELD));
+        if (_pendingCount++ == 0) {
+            _handler.postDelayed(_flushExpired, windowMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Called before a field of the tracker changes, so hits tracked before and
+     * after the change are not taken for duplicates of each other.
+     */
+    public void onTrackerChanged(String trackerId) {
+        if (_windowMillis <= 0) {
+            return;
+        }
+
+        synchronized (this) {
+            for (int slot = 0; slot < TABLE_SIZE; slot++) {
+                if (trackerId.equals(_trackerIds[slot])) {
+                    // Sent ahead of the change, so it still applies the old fields
+                    sendPending(slot);
+                    _fingerprints[slot] = 0;
+                    _times[slot] = 0;
+                    _trackerIds[slot] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the held events whose window has ended, or all of them.
+     */
+    public synchronized void flush(boolean all) {
+        if (_pendingCount == 0) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        long nextFlush = Long.MAX_VALUE;
+
+        for (int slot = 0; slot < TABLE_SIZE; slot++) {
+            if (_pendingHits[slot] == null) {
+                continue;
+            }
+
+            long expiresAt = _times[slot] + _windowMillis;
+            if (all || expiresAt <= now) {
+                sendPending(slot);
+            } else {
+                nextFlush = Math.min(nextFlush, expiresAt);
+            }
+        }
+
+        _handler.removeCallbacks(_flushExpired);
+        if (nextFlush != Long.MAX_VALUE) {
+            _handler.postDelayed(_flushExpired, nextFlush - now);
+        }
+    }
+
+    private void sendPending(int slot) {
+        Map<String, String> hit = _pendingHits[slot];
+        if (hit == null) {
+            return;
+        }
+
+        // Copied, the hit may be shared by the trackers of a group
+        Map<String, String> merged = new HashMap<String, String>(hit);
+        merged.put(EVENT_VALUE_FIELD, Long.toString(_pendingValues[slot]));
+        _dispatcher.send(_pendingTrackerIds[slot], merged);
+
+        _pendingTrackerIds[slot] = null;
+        _pendingHits[slot] = null;
+        _pendingCount--;
+    }
+
+    private static long parseValue(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Order independent hash of the hit's fields, leaving out the event value
+     * when values are merged. Never returns 0, which marks an empty slot.
+     */
+    private static long fingerprint(String trackerId, Map<String, String> hit, boolean ignoreValue) {
+        long fingerprint = mix(trackerId.hashCode());
+
+        for (Map.Entry<String, String> entry : hit.entrySet()) {
+            String key = entry.getKey();
+            if (ignoreValue && EVENT_VALUE_FIELD.equals(key)) {
+                continue;
+            }
+
+            String value = entry.getValue();
+            fingerprint += mix(((long) key.hashCode() << 32) ^ (value != null ? value.hashCode() : 0));
+        }
+
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
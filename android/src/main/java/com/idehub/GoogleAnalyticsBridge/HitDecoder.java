@@ -0,0 +1,238 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.util.Base64;
+
+import com.google.android.gms.analytics.HitBuilders;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the packed hit batches written by src/HitEncoder.js straight into
+ * hit builders. A batch crosses the bridge as one base64 string instead of an
+ * array of maps, which saves converting every field through a ReadableMap.
+ *
+ * Layout, all integers unsigned LEB128 varints:
+ *
+ *   version
+ *   string count, then per string its UTF-8 length and bytes
+ *   hit count, then per hit its type and fields, ended by field 0
+ *
+ * A field is its id followed by its value: strings are indices into the
+ * string table, numbers are zigzag encoded, custom dimensions are the
+ * dimension index followed by a string. The ids below must match the encoder.
+ */
+public class HitDecoder {
+
+    public static final int VERSION = 1;
+
+    private static final int HIT_SCREEN = 1;
+    private static final int HIT_EVENT = 2;
+    private static final int HIT_TIMING = 3;
+    private static final int HIT_EXCEPTION = 4;
+    private static final int HIT_SOCIAL = 5;
+
+    private static final int FIELD_END = 0;
+    private static final int FIELD_SCREEN_NAME = 1;
+    private static final int FIELD_CATEGORY = 2;
+    private static final int FIELD_ACTION = 3;
+    private static final int FIELD_LABEL = 4;
+    private static final int FIELD_VALUE = 5;
+    private static final int FIELD_NAME = 6;
+    private static final int FIELD_ERROR = 7;
+    private static final int FIELD_FATAL = 8;
+    private static final int FIELD_NETWORK = 9;
+    private static final int FIELD_TARGET_URL = 10;
+    private static final int FIELD_CUSTOM_DIMENSION = 11;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] _bytes;
+    private int _position;
+    private String[] _strings;
+
+    private HitDecoder(byte[] bytes) {
+        _bytes = bytes;
+    }
+
+    /**
+     * Throws IllegalArgumentException if the batch is malformed or was written
+     * by another version of the encoder. Unknown hit types are skipped.
+     */
+    public static List<Map<String, String>> decode(String base64) {
+        return new HitDecoder(Base64.decode(base64, Base64.DEFAULT)).readBatch();
+    }
+
+    private List<Map<String, String>> readBatch() {
+        int version = readVarint();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported hit batch version " + version);
+        }
+
+        _strings = new String[readLength()];
+        for (int index = 0; index < _strings.length; index++) {
+            int length = readLength();
+            if (length > _bytes.length - _position) {
+                throw new IllegalArgumentException("Truncated hit batch");
+            }
+            _strings[index] = new String(_bytes, _position, length, UTF_8);
+            _position += length;
+        }
+
+        int count = readLength();
+        List<Map<String, String>> hits = new ArrayList<Map<String, String>>(count);
+        for (int index = 0; index < count; index++) {
+            Map<String, String> hit = readHit();
+            if (hit != null) {
+                hits.add(hit);
+            }
+        }
+
+        return hits;
+    }
+
+    private Map<String, String> readHit() {
+        int type = readVarint();
+        HitBuilders.HitBuilder<?> builder;
+
+        switch (type) {
+            case HIT_SCREEN:
+                builder = new HitBuilders.ScreenViewBuilder();
+                break;
+            case HIT_EVENT:
+                builder = new HitBuilders.EventBuilder();
+                break;
+            case HIT_TIMING:
+                builder = new HitBuilders.TimingBuilder();
+                break;
+            case HIT_EXCEPTION:
+                builder = new HitBuilders.ExceptionBuilder();
+                break;
+            case HIT_SOCIAL:
+                builder = new HitBuilders.SocialBuilder();
+                break;
+            default:
+                // Still read, to get to the next hit
+                builder = null;
+                break;
+        }
+
+        for (int field = readVarint(); field != FIELD_END; field = readVarint()) {
+            if (field == FIELD_CUSTOM_DIMENSION) {
+                int dimensionIndex = readVarint();
+                String value = readString();
+                if (builder != null) {
+                    builder.setCustomDimension(dimensionIndex, value);
+                }
+            } else if (field == FIELD_VALUE || field == FIELD_FATAL) {
+                long value = readZigzag();
+                if (builder != null) {
+                    setNumber(builder, field, value);
+                }
+            } else {
+                String value = readString();
+                if (builder != null) {
+                    setString(builder, field, value);
+                }
+            }
+        }
+
+        return builder != null ? builder.build() : null;
+    }
+
+    private static void setString(HitBuilders.HitBuilder<?> builder, int field, String value) {
+        if (field == FIELD_SCREEN_NAME) {
+            builder.set(GA.SCREEN_NAME_FIELD, value);
+        } else if (builder instanceof HitBuilders.EventBuilder) {
+            HitBuilders.EventBuilder event = (HitBuilders.EventBuilder) builder;
+            if (field == FIELD_CATEGORY) {
+                event.setCategory(value);
+            } else if (field == FIELD_ACTION) {
+                event.setAction(value);
+            } else if (field == FIELD_LABEL) {
+                event.setLabel(value);
+            }
+        } else if (builder instanceof HitBuilders.TimingBuilder) {
+            HitBuilders.TimingBuilder timing = (HitBuilders.TimingBuilder) builder;
+            if (field == FIELD_CATEGORY) {
+                timing.setCategory(value);
+            } else if (field == FIELD_NAME) {
+                timing.setVariable(value);
+            } else if (field == FIELD_LABEL) {
+                timing.setLabel(value);
+            }
+        } else if (builder instanceof HitBuilders.ExceptionBuilder) {
+            if (field == FIELD_ERROR) {
+                ((HitBuilders.ExceptionBuilder) builder).setDescription(value);
+            }
+        } else if (builder instanceof HitBuilders.SocialBuilder) {
+            HitBuilders.SocialBuilder social = (HitBuilders.SocialBuilder) builder;
+            if (field == FIELD_NETWORK) {
+                social.setNetwork(value);
+            } else if (field == FIELD_ACTION) {
+                social.setAction(value);
+            } else if (field == FIELD_TARGET_URL) {
+                social.setTarget(value);
+            }
+        }
+    }
+
+    private static void setNumber(HitBuilders.HitBuilder<?> builder, int field, long value) {
+        if (field == FIELD_VALUE && builder instanceof HitBuilders.EventBuilder) {
+            ((HitBuilders.EventBuilder) builder).setValue(value);
+        } else if (field == FIELD_VALUE && builder instanceof HitBuilders.TimingBuilder) {
+            ((HitBuilders.TimingBuilder) builder).setValue(value);
+        } else if (field == FIELD_FATAL && builder instanceof HitBuilders.ExceptionBuilder) {
+            ((HitBuilders.ExceptionBuilder) builder).setFatal(value != 0);
+        }
+    }
+
+    private String readString() {
+        int index = readVarint();
+        if (index < 0 || index >= _strings.length) {
+            throw new IllegalArgumentException("Bad string index " + index);
+        }
+        return _strings[index];
+    }
+
+    private long readZigzag() {
+        long value = readVarlong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int readLength() {
+        int length = readVarint();
+        if (length < 0 || length > _bytes.length) {
+            throw new IllegalArgumentException("Bad length " + length);
+        }
+        return length;
+    }
+
+    private int readVarint() {
+        long value = readVarlong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of range");
+        }
+        return (int) value;
+    }
+
+    private long readVarlong() {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (_position >= _bytes.length) {
+                throw new IllegalArgumentException("Truncated hit batch");
+            }
+
+            byte b = _bytes[_position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
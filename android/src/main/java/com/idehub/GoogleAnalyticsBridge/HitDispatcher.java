@@ -0,0 +1,369 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands hits over to a dedicated worker thread which passes them to the hit
+ * sink, usually the Google Analytics trackers, so the React Native modules
+ * thread never waits on the Google Analytics library.
+ *
+ * Hits are kept in a bounded ring buffer. The producer side is the modules
+ * thread (calls are serialized in case GA is used from elsewhere), the worker
+ * is the only consumer. Tracker fields that affect later hits, like the screen
+ * name, go through the same buffer so they are applied in order.
+ *
+ * With a journal, every record accepted into the queue is also appended to
+ * it, and records left over by a previous process are replayed before any new
+ * ones are sent. The worker opens the journal, so the modules thread never
+ * waits for the file to be mapped.
+ *
+ * Records only carry a tracker id, the sink looks trackers up on the worker,
+ * so the Google Analytics SDK is initialized there; hits tracked meanwhile
+ * wait in the buffer.
+ */
+public class HitDispatcher {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        BLOCK
+    }
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // Slots are cleared once taken, so sent hits are not kept alive until overwritten
+    private final AtomicReferenceArray<HitRecord> _buffer;
+    private final int _mask;
+
+    // Next slot to read; advanced by the worker, and by the producer when dropping the oldest hit
+    private final AtomicLong _head = new AtomicLong();
+    // Next slot to write; only advanced by the producer
+    private final AtomicLong _tail = new AtomicLong();
+
+    private final AtomicLong _enqueued = new AtomicLong();
+    private final AtomicLong _dropped = new AtomicLong();
+    private final AtomicLong _sent = new AtomicLong();
+
+    private volatile OverflowPolicy _overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile boolean _workerParked;
+    private final Thread _worker;
+    private volatile boolean _shutdown;
+    // Only touched by the worker
+    private boolean _stopped;
+
+    // Tasks which need no ordering with records, queued without ever blocking
+    private final Queue<Runnable> _unorderedTasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final HitJournal _journal;
+    private final BridgeMetrics _metrics;
+    private volatile HitSink _sink;
+
+    public HitDispatcher(HitSink sink) {
+        this(DEFAULT_CAPACITY, null, null, sink);
+    }
+
+    public HitDispatcher(HitJournal journal, BridgeMetrics metrics, HitSink sink) {
+        this(DEFAULT_CAPACITY, journal, metrics, sink);
+    }
+
+    /**
+     * @param metrics receives queue wait and send times, may be null
+     * @param sink only called on the worker thread, which is where the Google
+     *             Analytics SDK gets initialized
+     */
+    public HitDispatcher(int capacity, HitJournal journal, BridgeMetrics metrics, HitSink sink) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        _buffer = new AtomicReferenceArray<HitRecord>(size);
+        _mask = size - 1;
+        _journal = journal;
+        _metrics = metrics;
+        _sink = sink;
+
+        _worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (_journal != null) {
+                    _journal.open();
+                    _journal.replay(new HitJournal.Replayer() {
+                        @Override
+                        public void replay(String trackerId, String field, String value) {
+                            _sink.set(trackerId, field, value);
+                        }
+
+                        @Override
+                        public void replay(String trackerId, Map<String, String> hit) {
+                            _sink.send(trackerId, hit);
+                        }
+                    });
+                }
+                drain();
+            }
+        }, "GoogleAnalyticsBridge-dispatch");
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+
+    /**
+     * Replaces the sink, starting with the next record the worker takes. The
+     * previous sink is closed on the worker thread.
+     */
+    public void setSink(final HitSink sink) {
+        run(new Runnable() {
+            @Override
+            public void run() {
+                HitSink previous = _sink;
+                _sink = sink;
+                if (previous != sink) {
+                    previous.close();
+                }
+            }
+        });
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        _overflowPolicy = overflowPolicy;
+    }
+
+    public long getEnqueuedCount() {
+        return _enqueued.get();
+    }
+
+    public long getDroppedCount() {
+        return _dropped.get();
+    }
+
+    public long getSentCount() {
+        return _sent.get();
+    }
+
+    public long getQueuedCount() {
+        return Math.max(0, _tail.get() - _head.get());
+    }
+
+    public void send(String trackerId, Map<String, String> hit) {
+        offer(new HitRecord(trackerId, hit, null, null, null));
+    }
+
+    public void set(String trackerId, String field, String value) {
+        offer(new HitRecord(trackerId, null, field, value, null));
+    }
+
+    /**
+     * Runs the task on the worker thread once every record queued before it
+     * has been handed to its tracker. Tasks are not journaled.
+     */
+    public void run(Runnable task) {
+        offer(new HitRecord(null, null, null, null, task));
+    }
+
+    /**
+     * Runs the task on the worker thread soon, without waiting for room in
+     * the queue or for the records queued before it. Never blocks, so the UI
+     * thread may call it. The task waits while the worker opens the journal.
+     */
+    public void runUnordered(Runnable task) {
+        if (_shutdown) {
+            return;
+        }
+
+        _unorderedTasks.add(task);
+        LockSupport.unpark(_worker);
+    }
+
+    /**
+     * Sends what is queued, then closes the sink and the journal and stops the
+     * worker. Records offered afterwards are dropped.
+     */
+    public synchronized void shutdown() {
+        if (_shutdown) {
+            return;
+        }
+
+        run(new Runnable() {
+            @Override
+            public void run() {
+                _stopped = true;
+            }
+        });
+        _shutdown = true;
+    }
+
+    private synchronized void offer(HitRecord record) {
+        if (_shutdown) {
+            if (record.task == null) {
+                _dropped.incrementAndGet();
+            }
+            return;
+        }
+
+        long tail = _tail.get();
+
+        while (tail - _head.get() >= _buffer.length()) {
+            // Tasks usually settle a promise, so they wait for room rather than being dropped
+            OverflowPolicy policy = record.task != null ? OverflowPolicy.BLOCK : _overflowPolicy;
+
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                _dropped.incrementAndGet();
+                return;
+            }
+
+            long head = _head.get();
+            HitRecord oldest = _buffer.get((int) head & _mask);
+            if (oldest == null) {
+                // Just taken by the worker, which advanced the head meanwhile
+                continue;
+            }
+
+            // Tasks may initialize the SDK or close a sink, which must only
+            // happen on the worker, so a task at the head is never evicted;
+            // it is about to run, and the producer waits for it instead
+            if (policy == OverflowPolicy.DROP_OLDEST && oldest.task == null) {
+                if (tail - head >= _buffer.length() && _head.compareAndSet(head, head + 1)) {
+                    _dropped.incrementAndGet();
+                }
+            } else {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+
+        // Only records which made it into the queue are journaled, under the
+        // same lock so journal order matches queue order
+        if (_journal != null && record.task == null) {
+            record.journalOffset = record.hit != null ?
+                _journal.appendHit(record.trackerId, record.hit) :
+                _journal.appendSet(record.trackerId, record.field, record.value);
+        }
+
+        _buffer.set((int) tail & _mask, record);
+        _tail.set(tail + 1);
+        _enqueued.incrementAndGet();
+
+        if (_workerParked) {
+            LockSupport.unpark(_worker);
+        }
+    }
+
+    private HitRecord poll() {
+        while (true) {
+            long head = _head.get();
+            if (head >= _tail.get()) {
+                return null;
+            }
+
+            // The slot is read before claiming it; if the producer dropped it
+            // meanwhile the claim fails and the read value is discarded
+            int slot = (int) head & _mask;
+            HitRecord record = _buffer.get(slot);
+            if (_head.compareAndSet(head, head + 1)) {
+                // Once the head has moved the producer may already have
+                // reused the slot, so it is only cleared if still ours
+                _buffer.compareAndSet(slot, record, null);
+                return record;
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            runUnorderedTasks();
+            HitRecord record = poll();
+
+            if (record == null) {
+                try {
+                    _sink.flush();
+                } catch (RuntimeException e) {
+                    // Flushing is best effort
+                }
+
+                _workerParked = true;
+                if (_head.get() >= _tail.get() && _unorderedTasks.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                _workerParked = false;
+                continue;
+            }
+
+            long dequeuedAt = System.nanoTime();
+            if (_metrics != null && record.task == null) {
+                _metrics.queueWait.record(dequeuedAt - record.enqueuedAt);
+            }
+
+            try {
+                if (record.task != null) {
+                    record.task.run();
+                } else if (record.hit != null) {
+                    _sink.send(record.trackerId, record.hit);
+                    _sent.incrementAndGet();
+
+                    if (_metrics != null) {
+                        _metrics.send.record(System.nanoTime() - dequeuedAt);
+                    }
+                } else {
+                    _sink.set(record.trackerId, record.field, record.value);
+                }
+            } catch (RuntimeException e) {
+                // A failing hit must not take down the dispatch thread
+                _dropped.incrementAndGet();
+            }
+
+            if (record.journalOffset > 0) {
+                _journal.markDispatched(record.journalOffset);
+            }
+
+            if (_stopped) {
+                stop();
+                return;
+            }
+        }
+    }
+
+    private void runUnorderedTasks() {
+        Runnable task;
+        while ((task = _unorderedTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Same as for tasks in the queue, the worker keeps going
+            }
+        }
+    }
+
+    private void stop() {
+        try {
+            _sink.flush();
+            _sink.close();
+        } catch (RuntimeException e) {
+            // Nothing left to retry with
+        }
+
+        if (_journal != null) {
+            _journal.close();
+        }
+    }
+
+    private static final class HitRecord {
+        final String trackerId;
+        final Map<String, String> hit;
+        final String field;
+        final String value;
+        final Runnable task;
+        final long enqueuedAt = System.nanoTime();
+        long journalOffset = -1;
+
+        HitRecord(String trackerId, Map<String, String> hit,
+                String field, String value, Runnable task) {
+            this.trackerId = trackerId;
+            this.hit = hit;
+            this.field = field;
+            this.value = value;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-tracker pre-filter checked before a hit is built. Sampling is decided
+ * once per client id, by a hash of it into 10000 buckets, so a client is
+ * either always in or always out of the sample. This is the bridge's own
+ * scheme; which clients it keeps differs from the SDK's sampling. Rate
+ * limiting uses one token bucket per hit category.
+ */
+public class HitFilter {
+
+    private static final int SAMPLE_BUCKETS = 10000;
+
+    private volatile boolean _sampledOut;
+    private volatile double _hitsPerSecond;
+    private volatile int _burstSize;
+    private final ConcurrentMap<String, TokenBucket> _buckets =
+        new ConcurrentHashMap<String, TokenBucket>();
+
+    /**
+     * Without a client id to decide by, hits are kept unless the rate is 0.
+     *
+     * @param sampleRate percentage of clients to keep, 0 - 100
+     */
+    public void setSampleRate(String clientId, double sampleRate) {
+        if (clientId == null) {
+            _sampledOut = sampleRate <= 0;
+            return;
+        }
+
+        int bucket = (mix(clientId.hashCode()) & Integer.MAX_VALUE) % SAMPLE_BUCKETS;
+        _sampledOut = bucket >= sampleRate * (SAMPLE_BUCKETS / 100);
+    }
+
+    /**
+     * Limits each category to hitsPerSecond on average, allowing bursts of up
+     * to burstSize hits. A non positive rate removes the limit.
+     */
+    public void setRateLimit(double hitsPerSecond, int burstSize) {
+        _hitsPerSecond = hitsPerSecond;
+        _burstSize = Math.max(1, burstSize);
+        _buckets.clear();
+    }
+
+    public boolean allow(String category) {
+        if (_sampledOut) {
+            return false;
+        }
+
+        double hitsPerSecond = _hitsPerSecond;
+        if (hitsPerSecond <= 0) {
+            return true;
+        }
+
+        String key = category != null ? category : "";
+        TokenBucket bucket = _buckets.get(key);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(hitsPerSecond, _burstSize);
+            bucket = _buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+
+        return bucket.tryAcquire();
+    }
+
+    // Spreads String.hashCode bits so client ids with common prefixes do not cluster
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static final class TokenBucket {
+        private final double _tokensPerMilli;
+        private final int _capacity;
+        private double _tokens;
+        private long _lastRefill;
+
+        TokenBucket(double hitsPerSecond, int capacity) {
+            _tokensPerMilli = hitsPerSecond / 1000;
+            _capacity = capacity;
+            _tokens = capacity;
+            _lastRefill = SystemClock.elapsedRealtime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = SystemClock.elapsedRealtime();
+            _tokens = Math.min(_capacity, _tokens + (now - _lastRefill) * _tokensPerMilli);
+            _lastRefill = now;
+
+            if (_tokens < 1) {
+                return false;
+            }
+
+            _tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of hits which have been tracked but not yet handed to
+ * Google Analytics, kept in a fixed size memory-mapped segment file.
+ *
+ * Appends only copy bytes into the mapping; the OS writes the pages back on
+ * its own schedule, so a killed process loses nothing and there is no fsync on
+ * the hot path. Records are encoded into a reused buffer, so an append
+ * allocates nothing, and not at all while the journal is not ready. Once every appended record has been dispatched the segment is
+ * reset, otherwise the dispatched prefix is compacted away when space runs out.
+ * Recovery scans at most one segment and stops at the first invalid record.
+ *
+ * The journal is opened by the dispatch thread, appends made before that are
+ * not journaled rather than waiting for the file to be mapped and scanned. A
+ * file is only used by one open journal at a time; after a React Native
+ * reload the new journal waits for the old one to be closed, so records still
+ * being sent by the old dispatcher are not replayed.
+ *
+ * Layout: magic, dispatched offset, then records of
+ * [length][crc32][payload] terminated by a zero length.
+ */
+public class HitJournal {
+
+    public interface Replayer {
+        void replay(String trackerId, String field, String value);
+
+        void replay(String trackerId, Map<String, String> hit);
+    }
+
+    private static final int MAGIC = 0x47414A31;
+    private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long OPEN_TIMEOUT_MILLIS = 30 * 1000;
+
+    private static final byte TYPE_HIT = 0;
+    private static final byte TYPE_SET = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Paths of the files held by an open journal, guarded by itself
+    private static final Set<String> OPEN_FILES = new HashSet<String>();
+
+    private final File _file;
+    private final int _segmentSize;
+    private final CRC32 _crc = new CRC32();
+    // Guarded by this, like the mapping
+    private final PayloadWriter _scratch = new PayloadWriter();
+
+    private MappedByteBuffer _buffer;
+    private boolean _opened;
+    private boolean _claimed;
+    private boolean _closed;
+    // Set once open() is done, so appends never wait for it
+    private volatile boolean _ready;
+
+    // Logical offsets grow forever; the segment holds [_base, _base + segment size)
+    private long _base;
+    private long _dispatched;
+    private long _written;
+
+    // Records found at startup; the segment is not reset or compacted until they are replayed
+    private long _recoveredStart;
+    private long _recoveredEnd;
+    private boolean _replayPending;
+
+    public HitJournal(File file) {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public HitJournal(File file, int segmentSize) {
+        _file = file;
+        _segmentSize = segmentSize;
+    }
+
+    /**
+     * Maps the segment and finds the records left over by a previous process
+     * or journal instance, first waiting for that instance to be closed. Only
+     * called on the dispatch thread.
+     */
+    public void open() {
+        synchronized (this) {
+            if (_opened || _closed) {
+                return;
+            }
+            _opened = true;
+        }
+
+        String path = _file.getAbsolutePath();
+        synchronized (OPEN_FILES) {
+            long deadline = System.currentTimeMillis() + OPEN_TIMEOUT_MILLIS;
+            while (OPEN_FILES.contains(path)) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    // Never closed, hits are dispatched without a journal
+                    return;
+                }
+                try {
+                    OPEN_FILES.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            OPEN_FILES.add(path);
+        }
+
+        synchronized (this) {
+            _claimed = true;
+            if (_closed) {
+                release();
+                return;
+            }
+
+            map();
+            _ready = _buffer != null;
+        }
+    }
+
+    /**
+     * Stops journaling and lets another instance open the file. Records not
+     * yet marked as dispatched are replayed by the next one.
+     */
+    public synchronized void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        _ready = false;
+
+        if (_buffer != null) {
+            _buffer.force();
+            _buffer = null;
+        }
+
+        if (_claimed) {
+            release();
+        }
+    }
+
+    private void release() {
+        synchronized (OPEN_FILES) {
+            OPEN_FILES.remove(_file.getAbsolutePath());
+            OPEN_FILES.notifyAll();
+        }
+    }
+
+    private void map() {
+        try {
+            RandomAccessFile file = new RandomAccessFile(_file, "rw");
+            try {
+                _buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _segmentSize);
+            } finally {
+                // The mapping stays valid after the channel is closed
+                file.close();
+            }
+        } catch (IOException e) {
+            // Journaling is best effort, hits are still dispatched without it
+            _buffer = null;
+            return;
+        }
+
+        int start = HEADER_SIZE;
+        if (_buffer.getInt(0) == MAGIC) {
+            int dispatched = _buffer.getInt(4);
+            if (dispatched >= HEADER_SIZE && dispatched <= _segmentSize) {
+                start = dispatched;
+            }
+        } else {
+            _buffer.putInt(HEADER_SIZE, 0);
+            _buffer.putInt(4, HEADER_SIZE);
+            _buffer.putInt(0, MAGIC);
+        }
+
+        int end = start;
+        while (true) {
+            int length = readValidRecordLength(end);
+            if (length < 0) {
+                break;
+            }
+            end += RECORD_HEADER_SIZE + length;
+        }
+
+        _base = 0;
+        _dispatched = start;
+        _written = end;
+        _recoveredStart = start;
+        _recoveredEnd = end;
+        _replayPending = end > start;
+        terminate();
+    }
+
+    /**
+     * Hands the records found by open() to the replayer, marking each one as
+     * dispatched as it goes.
+     */
+    public void replay(Replayer replayer) {
+        long offset;
+        long end;
+        synchronized (this) {
+            if (!_replayPending) {
+                return;
+            }
+            offset = _recoveredStart;
+            end = _recoveredEnd;
+        }
+
+        while (offset < end) {
+            byte[] payload;
+            synchronized (this) {
+                if (_buffer == null) {
+                    return;
+                }
+                int position = (int) (offset - _base);
+                int length = _buffer.getInt(position);
+                payload = new byte[length];
+                _buffer.position(position + RECORD_HEADER_SIZE);
+                _buffer.get(payload);
+                offset += RECORD_HEADER_SIZE + length;
+            }
+
+            decode(payload, replayer);
+            markDispatched(offset);
+        }
+
+        synchronized (this) {
+            _replayPending = false;
+        }
+    }
+
+    /**
+     * Appends a hit, returning the offset to pass to markDispatched once it
+     * has been sent, or -1 if it could not be journaled.
+     */
+    public long appendHit(String trackerId, Map<String, String> hit) {
+        return append(TYPE_HIT, trackerId, hit, null, null);
+    }
+
+    public long appendSet(String trackerId, String field, String value) {
+        return append(TYPE_SET, trackerId, null, field, value);
+    }
+
+    private long append(byte type, String trackerId,
+            Map<String, String> hit, String field, String value) {
+
+        if (!_ready) {
+            return -1;
+        }
+
+        synchronized (this) {
+            if (_buffer == null) {
+                return -1;
+            }
+
+            encode(_scratch, type, trackerId, hit, field, value);
+            return write(_scratch._bytes, _scratch._length);
+        }
+    }
+
+    private long write(byte[] payload, int length) {
+        int size = RECORD_HEADER_SIZE + length;
+        // Keep room for the terminating zero length
+        if (_written - _base + size + 4 > _segmentSize) {
+            compact();
+            if (_written - _base + size + 4 > _segmentSize) {
+                return -1;
+            }
+        }
+
+        int position = (int) (_written - _base);
+        _buffer.putInt(position + size, 0);
+
+        _crc.reset();
+        _crc.update(payload, 0, length);
+        _buffer.putInt(position + 4, (int) _crc.getValue());
+        _buffer.position(position + RECORD_HEADER_SIZE);
+        _buffer.put(payload, 0, length);
+        // Written last, so a record is never visible before its payload
+        _buffer.putInt(position, length);
+
+        _written += size;
+        return _written;
+    }
+
+    /**
+     * Records that everything up to offset has been handed to the tracker.
+     */
+    public synchronized void markDispatched(long offset) {
+        if (_buffer == null || _closed || offset <= _dispatched) {
+            return;
+        }
+
+        _dispatched = Math.min(offset, _written);
+
+        if (_dispatched == _written && !_replayPending) {
+            // Nothing pending, start over at the beginning of the segment
+            _base = _written - HEADER_SIZE;
+            terminate();
+        }
+
+        _buffer.putInt(4, (int) (_dispatched - _base));
+    }
+
+    /**
+     * Moves the undispatched records to the start of the segment. Only done
+     * when they fit in the dispatched prefix, so no live byte is overwritten;
+     * the header is updated last, and until then a crash recovers the records
+     * at their old position.
+     */
+    private void compact() {
+        int from = (int) (_dispatched - _base);
+        int length = (int) (_written - _dispatched);
+        if (from == HEADER_SIZE || _replayPending || HEADER_SIZE + length + 4 > from) {
+            return;
+        }
+
+        byte[] pending = new byte[length];
+        _buffer.position(from);
+        _buffer.get(pending);
+        _buffer.position(HEADER_SIZE);
+        _buffer.put(pending);
+
+        _base = _dispatched - HEADER_SIZE;
+        terminate();
+        _buffer.putInt(4, HEADER_SIZE);
+    }
+
+    private void terminate() {
+        _buffer.putInt((int) (_written - _base), 0);
+    }
+
+    private int readValidRecordLength(int position) {
+        if (position + RECORD_HEADER_SIZE > _segmentSize) {
+            return -1;
+        }
+
+        int length = _buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length + 4 > _segmentSize) {
+            return -1;
+        }
+
+        byte[] payload = new byte[length];
+        _buffer.position(position + RECORD_HEADER_SIZE);
+        _buffer.get(payload);
+
+        _crc.reset();
+        _crc.update(payload, 0, length);
+        return (int) _crc.getValue() == _buffer.getInt(position + 4) ? length : -1;
+    }
+
+    private static void encode(PayloadWriter writer, byte type, String trackerId,
+            Map<String, String> hit, String field, String value) {
+
+        writer.reset();
+        writer.writeByte(type);
+        writer.writeString(trackerId);
+
+        if (type == TYPE_SET) {
+            writer.writeString(field);
+            writer.writeString(value);
+        } else {
+            writer.writeInt(hit.size());
+            for (Map.Entry<String, String> entry : hit.entrySet()) {
+                writer.writeString(entry.getKey());
+                writer.writeString(entry.getValue());
+            }
+        }
+    }
+
+    private static void decode(byte[] payload, Replayer replayer) {
+        PayloadReader reader = new PayloadReader(payload);
+        byte type = reader.readByte();
+        String trackerId = reader.readString();
+
+        if (type == TYPE_SET) {
+            replayer.replay(trackerId, reader.readString(), reader.readString());
+        } else {
+            int count = reader.readInt();
+            Map<String, String> hit = new HashMap<String, String>(count * 2);
+            for (int i = 0; i < count; i++) {
+                hit.put(reader.readString(), reader.readString());
+            }
+            replayer.replay(trackerId, hit);
+        }
+    }
+
+    private static final class PayloadWriter {
+        private byte[] _bytes = new byte[256];
+        private int _length;
+
+        void reset() {
+            _length = 0;
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            _bytes[_length++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            _bytes[_length++] = (byte) (value >>> 24);
+            _bytes[_length++] = (byte) (value >>> 16);
+            _bytes[_length++] = (byte) (value >>> 8);
+            _bytes[_length++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+
+            // Encoded in place rather than with getBytes, which allocates;
+            // the byte length is filled in afterwards
+            int start = _length;
+            writeInt(0);
+            ensureCapacity(value.length() * 3);
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    _bytes[_length++] = (byte) c;
+                } else if (c < 0x800) {
+                    _bytes[_length++] = (byte) (0xC0 | (c >> 6));
+                    _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    char low = i + 1 < value.length() ? value.charAt(i + 1) : 0;
+                    if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                        int codePoint = Character.toCodePoint(c, low);
+                        _bytes[_length++] = (byte) (0xF0 | (codePoint >> 18));
+                        _bytes[_length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        _bytes[_length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        _bytes[_length++] = (byte) (0x80 | (codePoint & 0x3F));
+                        i++;
+                    } else {
+                        // Unpaired, replaced like getBytes does
+                        _bytes[_length++] = '?';
+                    }
+                } else {
+                    _bytes[_length++] = (byte) (0xE0 | (c >> 12));
+                    _bytes[_length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+
+            int length = _length - start - 4;
+            _bytes[start] = (byte) (length >>> 24);
+            _bytes[start + 1] = (byte) (length >>> 16);
+            _bytes[start + 2] = (byte) (length >>> 8);
+            _bytes[start + 3] = (byte) length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (_length + extra > _bytes.length) {
+                byte[] bytes = new byte[Math.max(_bytes.length * 2, _length + extra)];
+                System.arraycopy(_bytes, 0, bytes, 0, _length);
+                _bytes = bytes;
+            }
+        }
+    }
+
+    private static final class PayloadReader {
+        private final byte[] _bytes;
+        private int _position;
+
+        PayloadReader(byte[] bytes) {
+            _bytes = bytes;
+        }
+
+        byte readByte() {
+            return _bytes[_position++];
+        }
+
+        int readInt() {
+            return ((_bytes[_position++] & 0xFF) << 24)
+                | ((_bytes[_position++] & 0xFF) << 16)
+                | ((_bytes[_position++] & 0xFF) << 8)
+                | (_bytes[_position++] & 0xFF);
+        }
+
+        String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+
+            String value = new String(_bytes, _position, length, UTF_8);
+            _position += length;
+            return value;
+        }
+    }
+}
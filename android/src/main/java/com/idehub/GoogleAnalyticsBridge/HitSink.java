@@ -0,0 +1,23 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import java.util.Map;
+
+/**
+ * Where the dispatch thread hands hits and tracker fields to. Only called on
+ * that thread, so implementations need no locking.
+ */
+public interface HitSink {
+    void send(String trackerId, Map<String, String> hit);
+
+    void set(String trackerId, String field, String value);
+
+    /**
+     * Called when the dispatch queue has been drained.
+     */
+    void flush();
+
+    /**
+     * Called when the sink is replaced by another one.
+     */
+    void close();
+}
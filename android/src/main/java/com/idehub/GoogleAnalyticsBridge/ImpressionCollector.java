@@ -0,0 +1,217 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.google.android.gms.analytics.HitBuilders;
+import com.google.android.gms.analytics.ecommerce.Product;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects product impressions and sends them packed into as few hits as
+ * possible, rather than one hit per product tile. Each product is counted
+ * once per list until the screen changes. Pending impressions are sent when a
+ * hit is full, once no impression has arrived for a second, or at the latest
+ * ten seconds after the first one.
+ *
+ * Hits are built under the collector's lock but sent after releasing it,
+ * since sending may wait for room in the dispatch queue.
+ */
+public class ImpressionCollector {
+
+    static final String IMPRESSION_CATEGORY = "Ecommerce";
+    private static final String IMPRESSION_ACTION = "Impression";
+
+    // Same limits as for purchase products
+    private static final int MAX_IMPRESSIONS_PER_HIT = 200;
+    private static final int MAX_IMPRESSIONS_PAYLOAD_SIZE = 6144;
+    private static final int MAX_SEEN_PER_LIST = 2000;
+
+    private static final long IDLE_MILLIS = 1000;
+    private static final long MAX_DELAY_MILLIS = 10 * 1000;
+
+    public interface Sender {
+        void send(String trackerId, Map<String, String> hit);
+    }
+
+    private final Sender _sender;
+    private final Handler _handler;
+    private final Map<String, TrackerImpressions> _trackers = new HashMap<String, TrackerImpressions>();
+
+    private int _pendingCount;
+    private long _firstPendingAt;
+    private long _lastPendingAt;
+
+    private final Runnable _flushIdle = new Runnable() {
+        @Override
+        public void run() {
+            flushIfIdle();
+        }
+    };
+
+    /**
+     * @param handler runs the idle and timer flushes, not the main thread's
+     */
+    public ImpressionCollector(Sender sender, Handler handler) {
+        _sender = sender;
+        _handler = handler;
+    }
+
+    /**
+     * @param payloadSize approximate number of bytes the product adds to a hit
+     */
+    public void add(String trackerId, String listName, String productId,
+            Product product, int payloadSize) {
+
+        Map<String, String> full = null;
+
+        synchronized (this) {
+            TrackerImpressions impressions = _trackers.get(trackerId);
+            if (impressions == null) {
+                impressions = new TrackerImpressions();
+                _trackers.put(trackerId, impressions);
+            }
+
+            if (!impressions.markSeen(listName, productId)) {
+                return;
+            }
+
+            if (impressions.count > 0 && (impressions.count == MAX_IMPRESSIONS_PER_HIT
+                    || impressions.payloadSize + payloadSize > MAX_IMPRESSIONS_PAYLOAD_SIZE)) {
+                full = takePending(impressions);
+            }
+
+            if (impressions.hit == null) {
+                impressions.hit = new HitBuilders.EventBuilder()
+                    .setCategory(IMPRESSION_CATEGORY)
+                    .setAction(IMPRESSION_ACTION)
+                    .setNonInteraction(true);
+            }
+            impressions.hit.addImpression(product, listName);
+            impressions.count++;
+            impressions.payloadSize += payloadSize;
+
+            long now = SystemClock.elapsedRealtime();
+            if (_pendingCount++ == 0) {
+                _firstPendingAt = now;
+                _handler.removeCallbacks(_flushIdle);
+                _handler.postDelayed(_flushIdle, IDLE_MILLIS);
+            }
+            _lastPendingAt = now;
+        }
+
+        if (full != null) {
+            _sender.send(trackerId, full);
+        }
+    }
+
+    /**
+     * Sends the tracker's pending impressions and forgets which products it
+     * has seen, so the next screen counts them again.
+     */
+    public void reset(String trackerId) {
+        Map<String, String> pending;
+
+        synchronized (this) {
+            TrackerImpressions impressions = _trackers.remove(trackerId);
+            if (impressions == null) {
+                return;
+            }
+            pending = takePending(impressions);
+        }
+
+        if (pending != null) {
+            _sender.send(trackerId, pending);
+        }
+    }
+
+    /**
+     * Sends the pending impressions once they stop coming in or have waited
+     * too long, otherwise checks again later.
+     */
+    private void flushIfIdle() {
+        synchronized (this) {
+            if (_pendingCount == 0) {
+                return;
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            long flushAt = Math.min(_lastPendingAt + IDLE_MILLIS, _firstPendingAt + MAX_DELAY_MILLIS);
+            if (flushAt > now) {
+                _handler.postDelayed(_flushIdle, flushAt - now);
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * Sends the pending impressions of every tracker.
+     */
+    public void flush() {
+        Map<String, Map<String, String>> pending = new LinkedHashMap<String, Map<String, String>>();
+
+        synchronized (this) {
+            for (Map.Entry<String, TrackerImpressions> entry : _trackers.entrySet()) {
+                Map<String, String> hit = takePending(entry.getValue());
+                if (hit != null) {
+                    pending.put(entry.getKey(), hit);
+                }
+            }
+            _handler.removeCallbacks(_flushIdle);
+        }
+
+        for (Map.Entry<String, Map<String, String>> entry : pending.entrySet()) {
+            _sender.send(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Builds the pending hit and starts a new one, returning null if nothing
+     * is pending. Called holding the lock.
+     */
+    private Map<String, String> takePending(TrackerImpressions impressions) {
+        if (impressions.count == 0) {
+            return null;
+        }
+
+        Map<String, String> hit = impressions.hit.build();
+        _pendingCount -= impressions.count;
+        impressions.hit = null;
+        impressions.count = 0;
+        impressions.payloadSize = 0;
+        return hit;
+    }
+
+    private static class TrackerImpressions {
+        final Map<String, Set<String>> seen = new HashMap<String, Set<String>>();
+        HitBuilders.EventBuilder hit;
+        int count;
+        int payloadSize;
+
+        /**
+         * Returns false if the product was already seen in the list.
+         */
+        boolean markSeen(String listName, String productId) {
+            Set<String> products = seen.get(listName);
+
+            if (products == null) {
+                products = new HashSet<String>();
+                seen.put(listName, products);
+            }
+
+            if (products.size() >= MAX_SEEN_PER_LIST) {
+                // Very long lists count products again rather than growing without bound
+                products.clear();
+            }
+
+            return products.add(productId);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Writes hits as Measurement Protocol payloads, one per line, to a file or a
+ * TCP socket instead of sending them to Google Analytics. Meant for load and
+ * soak tests against a local stand-in collector, so the cost of the bridge can
+ * be measured apart from the cost of the SDK.
+ *
+ * The file or socket is opened on the first hit.
+ */
+public class LocalHitSink implements HitSink {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File _file;
+    private final String _host;
+    private final int _port;
+
+    private final MeasurementProtocolEncoder _encoder = new MeasurementProtocolEncoder();
+
+    private OutputStream _output;
+    private Socket _socket;
+
+    private LocalHitSink(File file, String host, int port) {
+        _file = file;
+        _host = host;
+        _port = port;
+    }
+
+    /**
+     * Appends payloads to the file.
+     */
+    public static LocalHitSink toFile(File file) {
+        return new LocalHitSink(file, null, 0);
+    }
+
+    /**
+     * Streams payloads to host:port, e.g. "10.0.2.2" for the machine running
+     * the emulator.
+     */
+    public static LocalHitSink toSocket(String host, int port) {
+        return new LocalHitSink(null, host, port);
+    }
+
+    @Override
+    public void send(String trackerId, Map<String, String> hit) {
+        String payload = _encoder.encode(trackerId, hit) + "\n";
+
+        try {
+            getOutput().write(payload.getBytes(UTF_8));
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException("Could not write hit", e);
+        }
+    }
+
+    @Override
+    public void set(String trackerId, String field, String value) {
+        _encoder.set(trackerId, field, value);
+    }
+
+    @Override
+    public void flush() {
+        if (_output != null) {
+            try {
+                _output.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (_output != null) {
+                _output.close();
+            }
+            if (_socket != null) {
+                _socket.close();
+            }
+        } catch (IOException e) {
+            // Nothing useful to do
+        }
+
+        _output = null;
+        _socket = null;
+    }
+
+    private OutputStream getOutput() throws IOException {
+        if (_output == null) {
+            if (_file != null) {
+                _output = new BufferedOutputStream(new FileOutputStream(_file, true));
+            } else {
+                Socket socket = new Socket();
+                socket.connect(new InetSocketAddress(_host, _port), CONNECT_TIMEOUT_MILLIS);
+                _socket = socket;
+                _output = new BufferedOutputStream(socket.getOutputStream());
+            }
+        }
+
+        return _output;
+    }
+}
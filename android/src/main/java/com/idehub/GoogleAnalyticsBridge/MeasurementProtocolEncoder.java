@@ -0,0 +1,122 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Turns hits into Measurement Protocol payloads for sinks which bypass the
+ * SDK. Tracker fields are kept per tracker and merged into each hit, the way
+ * the SDK's Tracker does. Fields which were never set, like the client id and
+ * app name, come from the field source, so hits are attributed to the same
+ * client and app as the ones the SDK sends. Not thread-safe, sinks only use
+ * it on the dispatch thread.
+ */
+public class MeasurementProtocolEncoder {
+
+    public interface FieldSource {
+        /**
+         * Returns the tracker's value of the field, or null if it has none.
+         */
+        String get(String trackerId, String field);
+    }
+
+    private static final String CLIENT_ID_FIELD = "&cid";
+
+    // Taken from the field source unless set on the encoder or the hit
+    private static final String[] DEFAULT_FIELDS = {
+        CLIENT_ID_FIELD, "&uid", "&an", "&av", "&aid", "&aiid", "&ul", "&sr", "&aip"
+    };
+
+    private final FieldSource _defaults;
+    // Cleared fields are kept as null, so they do not fall back to the field source
+    private final Map<String, Map<String, String>> _trackerFields =
+        new HashMap<String, Map<String, String>>();
+    private final StringBuilder _payload = new StringBuilder(512);
+
+    /**
+     * Every tracker gets a random client id, for sinks which never reach
+     * Google Analytics.
+     */
+    public MeasurementProtocolEncoder() {
+        this(null);
+    }
+
+    /**
+     * @param defaults where fields not set on the encoder come from, may be null
+     */
+    public MeasurementProtocolEncoder(FieldSource defaults) {
+        _defaults = defaults;
+    }
+
+    public void set(String trackerId, String field, String value) {
+        getTrackerFields(trackerId).put(field, value);
+    }
+
+    public String encode(String trackerId, Map<String, String> hit) {
+        Map<String, String> fields = getTrackerFields(trackerId);
+
+        _payload.setLength(0);
+        _payload.append("v=1&tid=").append(encode(trackerId));
+        for (String field : DEFAULT_FIELDS) {
+            if (!fields.containsKey(field) && !hit.containsKey(field)) {
+                appendField(field, getDefault(trackerId, field, fields));
+            }
+        }
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (!hit.containsKey(field.getKey())) {
+                appendField(field.getKey(), field.getValue());
+            }
+        }
+        for (Map.Entry<String, String> field : hit.entrySet()) {
+            appendField(field.getKey(), field.getValue());
+        }
+
+        return _payload.toString();
+    }
+
+    private Map<String, String> getTrackerFields(String trackerId) {
+        Map<String, String> fields = _trackerFields.get(trackerId);
+
+        if (fields == null) {
+            fields = new HashMap<String, String>();
+            _trackerFields.put(trackerId, fields);
+        }
+
+        return fields;
+    }
+
+    private String getDefault(String trackerId, String field, Map<String, String> fields) {
+        String value = _defaults != null ? _defaults.get(trackerId, field) : null;
+
+        if (value == null && CLIENT_ID_FIELD.equals(field)) {
+            // Every hit needs a client id, the made up one is kept for the tracker
+            value = UUID.randomUUID().toString();
+            fields.put(CLIENT_ID_FIELD, value);
+        }
+
+        return value;
+    }
+
+    private void appendField(String key, String value) {
+        if (value == null) {
+            return;
+        }
+
+        // Hit builders prefix Measurement Protocol parameters with &
+        _payload.append('&')
+            .append(encode(key.startsWith("&") ? key.substring(1) : key))
+            .append('=')
+            .append(encode(value));
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
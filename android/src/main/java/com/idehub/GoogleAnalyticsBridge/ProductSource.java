@@ -0,0 +1,20 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import com.google.android.gms.analytics.ecommerce.Product;
+
+/**
+ * Supplies purchase products one at a time, so large carts can be decoded
+ * straight into hits without first being collected in a list.
+ */
+public interface ProductSource {
+
+    int size();
+
+    Product get(int index);
+
+    /**
+     * Approximate number of bytes the product last returned by get adds to
+     * the hit payload.
+     */
+    int getPayloadSize();
+}
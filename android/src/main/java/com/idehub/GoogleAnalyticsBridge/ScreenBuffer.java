@@ -0,0 +1,162 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+import android.util.SparseArray;
+
+import com.google.android.gms.analytics.HitBuilders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counters and impression lists of the screen a tracker is on. They are added
+ * up natively and turned into one summary event each when the next screen
+ * starts or the app goes to the background, instead of an event per scroll
+ * milestone or impression.
+ *
+ * Summary events carry the screen's name and custom dimensions, so they are
+ * reported against the screen they were counted on.
+ */
+public class ScreenBuffer {
+
+    static final String SUMMARY_CATEGORY = "Screen Summary";
+
+    // Event labels are limited to 500 bytes
+    private static final int MAX_LABEL_LENGTH = 500;
+    private static final int MAX_IMPRESSIONS_PER_LIST = 1000;
+
+    private String _screenName;
+    private SparseArray<String> _dimensions;
+
+    // Single element arrays, so counting does not box
+    private final Map<String, long[]> _counters = new LinkedHashMap<String, long[]>();
+    private final Map<String, Set<String>> _impressions = new LinkedHashMap<String, Set<String>>();
+
+    /**
+     * Starts a new screen and returns the summary events of the previous one.
+     *
+     * @param dimensions copied, callers may reuse the array
+     */
+    public synchronized List<Map<String, String>> open(String screenName, SparseArray<String> dimensions) {
+        List<Map<String, String>> summary = drain();
+
+        _screenName = screenName;
+        _dimensions = dimensions != null ? dimensions.clone() : null;
+        return summary;
+    }
+
+    public synchronized void increment(String name, long amount) {
+        getCounter(name)[0] += amount;
+    }
+
+    /**
+     * Keeps the highest value seen on the screen, e.g. the scroll depth.
+     */
+    public synchronized void maximum(String name, long value) {
+        long[] counter = getCounter(name);
+        counter[0] = Math.max(counter[0], value);
+    }
+
+    /**
+     * Records that the item was shown in the list, once per screen.
+     */
+    public synchronized void addImpression(String listName, String itemId) {
+        Set<String> items = _impressions.get(listName);
+
+        if (items == null) {
+            items = new LinkedHashSet<String>();
+            _impressions.put(listName, items);
+        }
+
+        if (items.size() < MAX_IMPRESSIONS_PER_LIST) {
+            items.add(itemId);
+        }
+    }
+
+    /**
+     * Returns the summary events of the current screen and resets its counters,
+     * the screen itself stays open.
+     */
+    public synchronized List<Map<String, String>> drain() {
+        if (_counters.isEmpty() && _impressions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Map<String, String>> summary = new ArrayList<Map<String, String>>(
+                _counters.size() + _impressions.size());
+
+        for (Map.Entry<String, long[]> counter : _counters.entrySet()) {
+            summary.add(buildSummary(counter.getKey(), _screenName, counter.getValue()[0]));
+        }
+
+        for (Map.Entry<String, Set<String>> list : _impressions.entrySet()) {
+            Set<String> items = list.getValue();
+            summary.add(buildSummary(list.getKey(), joinLabel(items), items.size()));
+        }
+
+        _counters.clear();
+        _impressions.clear();
+        return summary;
+    }
+
+    private long[] getCounter(String name) {
+        long[] counter = _counters.get(name);
+
+        if (counter == null) {
+            counter = new long[1];
+            _counters.put(name, counter);
+        }
+
+        return counter;
+    }
+
+    private Map<String, String> buildSummary(String action, String label, long value) {
+        HitBuilders.EventBuilder hit = new HitBuilders.EventBuilder()
+            .setCategory(SUMMARY_CATEGORY)
+            .setAction(action)
+            .setValue(value)
+            // Sent after the user left the screen, so it must not count as engagement
+            .setNonInteraction(true);
+
+        if (label != null) {
+            hit.setLabel(label);
+        }
+
+        if (_screenName != null) {
+            hit.set(GA.SCREEN_NAME_FIELD, _screenName);
+        }
+
+        if (_dimensions != null) {
+            for (int i = 0; i < _dimensions.size(); i++) {
+                hit.setCustomDimension(_dimensions.keyAt(i), _dimensions.valueAt(i));
+            }
+        }
+
+        return hit.build();
+    }
+
+    /**
+     * Comma separated item ids, as many as fit in a label. The event value
+     * still counts all of them.
+     */
+    private static String joinLabel(Set<String> items) {
+        StringBuilder label = new StringBuilder();
+
+        for (String item : items) {
+            int length = label.length() + (label.length() > 0 ? 1 : 0) + item.length();
+            if (length > MAX_LABEL_LENGTH) {
+                break;
+            }
+            if (label.length() > 0) {
+                label.append(',');
+            }
+            label.append(item);
+        }
+
+        return label.toString();
+    }
+}
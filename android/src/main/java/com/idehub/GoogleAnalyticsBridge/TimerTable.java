@@ -0,0 +1,74 @@
+package com.idehub.GoogleAnalyticsBridge;
+
+/**
+ * Start times of the timers opened with startTiming, in a table allocated up
+ * front so starting and stopping a timer allocates nothing. When the table is
+ * full the oldest open timer is replaced.
+ */
+public class TimerTable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final String[] _keys;
+    private final long[] _startNanos;
+    private final int _mask;
+
+    public TimerTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TimerTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        _keys = new String[size];
+        _startNanos = new long[size];
+        _mask = size - 1;
+    }
+
+    /**
+     * Opens a timer, restarting it if one with the same key is open.
+     */
+    public synchronized void start(String key, long nowNanos) {
+        int home = key.hashCode() & _mask;
+        int free = -1;
+        int oldest = -1;
+
+        for (int probe = 0; probe <= _mask; probe++) {
+            int slot = (home + probe) & _mask;
+
+            if (key.equals(_keys[slot])) {
+                _startNanos[slot] = nowNanos;
+                return;
+            }
+
+            if (_keys[slot] == null) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (oldest < 0 || _startNanos[slot] < _startNanos[oldest]) {
+                oldest = slot;
+            }
+        }
+
+        int slot = free >= 0 ? free : oldest;
+        _keys[slot] = key;
+        _startNanos[slot] = nowNanos;
+    }
+
+    /**
+     * Closes a timer, returning how long it was open or -1 if it was not.
+     */
+    public synchronized long stop(String key, long nowNanos) {
+        int home = key.hashCode() & _mask;
+
+        for (int probe = 0; probe <= _mask; probe++) {
+            int slot = (home + probe) & _mask;
+
+            if (key.equals(_keys[slot])) {
+                _keys[slot] = null;
+                return nowNanos - _startNanos[slot];
+            }
+        }
+
+        return -1;
+    }
+}
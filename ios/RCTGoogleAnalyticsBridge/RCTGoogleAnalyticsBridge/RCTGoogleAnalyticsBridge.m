@@ -9,7 +9,9 @@
 #import "GAIEcommerceFields.h"
 
 @implementation RCTGoogleAnalyticsBridge {
-
+    NSMutableDictionary *dimensionSchemas;
+    NSMutableDictionary *trackerContexts;
+    NSMutableDictionary *openTimers;
 }
 
 NSString *staticTrackerId;
@@ -17,6 +19,9 @@ NSString *staticTrackerId;
 - (instancetype)init
 {
     if ((self = [super init])) {
+        dimensionSchemas = [NSMutableDictionary dictionary];
+        trackerContexts = [NSMutableDictionary dictionary];
+        openTimers = [NSMutableDictionary dictionary];
         [GAI sharedInstance].trackUncaughtExceptions = YES;
         [GAI sharedInstance].dispatchInterval = 20;
 
@@ -86,6 +91,57 @@ RCT_EXPORT_METHOD(trackEventWithCustomDimensionValues:(NSString *)trackerId cate
     [tracker send:[builder build]];
 }
 
+RCT_EXPORT_METHOD(registerTrackerGroup:(NSString *)groupId trackerIds:(NSArray *)trackerIds)
+{
+    // Tracker groups are only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(registerDimensionSchema:(NSString *)trackerId dimensionIndices:(NSArray *)dimensionIndices)
+{
+    dimensionSchemas[trackerId] = dimensionIndices;
+}
+
+- (void)setSchemaDimensions:(GAIDictionaryBuilder *)builder trackerId:(NSString *)trackerId dimensionValues:(NSArray *)dimensionValues
+{
+    NSArray *schema = dimensionSchemas[trackerId];
+    NSUInteger count = MIN([schema count], [dimensionValues count]);
+
+    for (NSUInteger position = 0; position < count; position++) {
+        id dimensionValue = dimensionValues[position];
+        if (dimensionValue == [NSNull null]) {
+            continue;
+        }
+        [builder set:[RCTConvert NSString:dimensionValue] forKey:[GAIFields customDimensionForIndex:[schema[position] intValue]]];
+    }
+}
+
+RCT_EXPORT_METHOD(trackScreenViewWithCustomDimensionArray:(NSString *)trackerId screenName:(NSString *)screenName dimensionValues:(NSArray *)dimensionValues)
+{
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+    [tracker set:kGAIScreenName
+         value:screenName];
+
+    GAIDictionaryBuilder *builder = [GAIDictionaryBuilder createScreenView];
+    [self setSchemaDimensions:builder trackerId:trackerId dimensionValues:dimensionValues];
+
+    [tracker send:[builder build]];
+}
+
+RCT_EXPORT_METHOD(trackEventWithCustomDimensionArray:(NSString *)trackerId category:(NSString *)category action:(NSString *)action optionalValues:(NSDictionary *)optionalValues dimensionValues:(NSArray *)dimensionValues)
+{
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+    NSString *label = [RCTConvert NSString:optionalValues[@"label"]];
+    NSNumber *value = [RCTConvert NSNumber:optionalValues[@"value"]];
+
+    GAIDictionaryBuilder *builder = [GAIDictionaryBuilder createEventWithCategory:category
+                                                                           action:action
+                                                                            label:label
+                                                                            value:value];
+    [self setSchemaDimensions:builder trackerId:trackerId dimensionValues:dimensionValues];
+
+    [tracker send:[builder build]];
+}
+
 RCT_EXPORT_METHOD(trackTiming:(NSString *)trackerId category:(nonnull NSString *)category value:(nonnull NSNumber *)value optionalValues:(nonnull NSDictionary *)optionalValues)
 {
     id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
@@ -97,6 +153,50 @@ RCT_EXPORT_METHOD(trackTiming:(NSString *)trackerId category:(nonnull NSString *
                                                             label:label] build]];
 }
 
+RCT_EXPORT_METHOD(incrementScreenCounter:(NSString *)trackerId name:(NSString *)name amount:(nonnull NSNumber *)amount)
+{
+    // Screen summaries are only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(updateScreenMaximum:(NSString *)trackerId name:(NSString *)name value:(nonnull NSNumber *)value)
+{
+    // Screen summaries are only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(addScreenImpression:(NSString *)trackerId listName:(NSString *)listName itemId:(NSString *)itemId)
+{
+    // Screen summaries are only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(trackImpressions:(NSString *)trackerId listName:(NSString *)listName products:(NSArray *)products)
+{
+    // Impression batching is only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(startTiming:(NSString *)key)
+{
+    // systemUptime is monotonic, unlike the wall clock
+    openTimers[key] = @([NSProcessInfo processInfo].systemUptime);
+}
+
+RCT_EXPORT_METHOD(endTiming:(NSString *)trackerId key:(NSString *)key category:(nonnull NSString *)category optionalValues:(nonnull NSDictionary *)optionalValues)
+{
+    NSNumber *startedAt = openTimers[key];
+    if (startedAt == nil) {
+        return;
+    }
+    [openTimers removeObjectForKey:key];
+
+    NSTimeInterval elapsed = [NSProcessInfo processInfo].systemUptime - [startedAt doubleValue];
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+    NSString *name = [RCTConvert NSString:optionalValues[@"name"]];
+    NSString *label = [RCTConvert NSString:optionalValues[@"label"]];
+    [tracker send:[[GAIDictionaryBuilder createTimingWithCategory:category
+                                                         interval:@(llround(elapsed * 1000))
+                                                             name:name
+                                                            label:label] build]];
+}
+
 RCT_EXPORT_METHOD(trackPurchaseEvent:(NSString *)trackerId product:(NSDictionary *)product transaction:(NSDictionary *)transaction eventCategory:(NSString *)eventCategory eventAction:(NSString *)eventAction)
 {
     id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
@@ -251,6 +351,38 @@ RCT_EXPORT_METHOD(setUser:(NSString *)trackerId userId:(NSString *)userId)
          value:userId];
 }
 
+RCT_EXPORT_METHOD(setTrackerContext:(NSString *)trackerId dimensionIndexValues:(NSDictionary *)dimensionIndexValues fields:(NSDictionary *)fields)
+{
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+    [self clearTrackerContext:trackerId];
+
+    NSMutableArray *keys = [NSMutableArray array];
+
+    for (NSString *dimensionIndex in dimensionIndexValues) {
+        NSString *key = [GAIFields customDimensionForIndex:[dimensionIndex intValue]];
+        [tracker set:key value:[RCTConvert NSString:dimensionIndexValues[dimensionIndex]]];
+        [keys addObject:key];
+    }
+
+    for (NSString *field in fields) {
+        [tracker set:field value:[RCTConvert NSString:fields[field]]];
+        [keys addObject:field];
+    }
+
+    trackerContexts[trackerId] = keys;
+}
+
+RCT_EXPORT_METHOD(clearTrackerContext:(NSString *)trackerId)
+{
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+
+    for (NSString *key in trackerContexts[trackerId]) {
+        [tracker set:key value:nil];
+    }
+
+    [trackerContexts removeObjectForKey:trackerId];
+}
+
 RCT_EXPORT_METHOD(allowIDFA:(NSString *)trackerId enabled:(BOOL)enabled)
 {
     id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
@@ -266,12 +398,91 @@ RCT_EXPORT_METHOD(trackSocialInteraction:(NSString *)trackerId network:(NSString
 }
 
 
+RCT_EXPORT_METHOD(trackBatch:(NSString *)trackerId hits:(NSArray *)hits)
+{
+    id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
+
+    for (NSDictionary *hit in hits) {
+        NSString *type = [RCTConvert NSString:hit[@"type"]];
+        GAIDictionaryBuilder *builder = nil;
+
+        if ([type isEqualToString:@"screen"]) {
+            [tracker set:kGAIScreenName
+                   value:[RCTConvert NSString:hit[@"screenName"]]];
+            builder = [GAIDictionaryBuilder createScreenView];
+        } else if ([type isEqualToString:@"event"]) {
+            builder = [GAIDictionaryBuilder createEventWithCategory:[RCTConvert NSString:hit[@"category"]]
+                                                             action:[RCTConvert NSString:hit[@"action"]]
+                                                              label:[RCTConvert NSString:hit[@"label"]]
+                                                              value:[RCTConvert NSNumber:hit[@"value"]]];
+        } else if ([type isEqualToString:@"timing"]) {
+            builder = [GAIDictionaryBuilder createTimingWithCategory:[RCTConvert NSString:hit[@"category"]]
+                                                            interval:[RCTConvert NSNumber:hit[@"value"]]
+                                                                name:[RCTConvert NSString:hit[@"name"]]
+                                                               label:[RCTConvert NSString:hit[@"label"]]];
+        } else if ([type isEqualToString:@"exception"]) {
+            builder = [GAIDictionaryBuilder createExceptionWithDescription:[RCTConvert NSString:hit[@"error"]]
+                                                                 withFatal:[NSNumber numberWithBool:[RCTConvert BOOL:hit[@"fatal"]]]];
+        } else if ([type isEqualToString:@"social"]) {
+            builder = [GAIDictionaryBuilder createSocialWithNetwork:[RCTConvert NSString:hit[@"network"]]
+                                                             action:[RCTConvert NSString:hit[@"action"]]
+                                                             target:[RCTConvert NSString:hit[@"targetUrl"]]];
+        } else if ([type isEqualToString:@"purchase"]) {
+            NSDictionary *transaction = [RCTConvert NSDictionary:hit[@"transaction"]];
+            NSString *eventCategory = hit[@"eventCategory"] ? [RCTConvert NSString:hit[@"eventCategory"]] : @"Ecommerce";
+            NSString *eventAction = hit[@"eventAction"] ? [RCTConvert NSString:hit[@"eventAction"]] : @"Purchase";
+            builder = [GAIDictionaryBuilder createEventWithCategory:eventCategory
+                                                             action:eventAction
+                                                              label:nil
+                                                              value:nil];
+            GAIEcommerceProductAction *action = [[GAIEcommerceProductAction alloc] init];
+            [action setAction:kGAIPAPurchase];
+            [action setTransactionId:[RCTConvert NSString:transaction[@"id"]]];
+            [action setAffiliation:[RCTConvert NSString:transaction[@"affiliation"]]];
+            [action setRevenue:[RCTConvert NSNumber:transaction[@"revenue"]]];
+            [action setTax:[RCTConvert NSNumber:transaction[@"tax"]]];
+            [action setShipping:[RCTConvert NSNumber:transaction[@"shipping"]]];
+            [action setCouponCode:[RCTConvert NSString:transaction[@"couponCode"]]];
+            [builder setProductAction:action];
+            for (id product in [RCTConvert NSArray:hit[@"products"]]) {
+                GAIEcommerceProduct *ecommerceProduct = [[GAIEcommerceProduct alloc] init];
+                [ecommerceProduct setId:[RCTConvert NSString:product[@"id"]]];
+                [ecommerceProduct setName:[RCTConvert NSString:product[@"name"]]];
+                [ecommerceProduct setCategory:[RCTConvert NSString:product[@"category"]]];
+                [ecommerceProduct setBrand:[RCTConvert NSString:product[@"brand"]]];
+                [ecommerceProduct setVariant:[RCTConvert NSString:product[@"variant"]]];
+                [ecommerceProduct setPrice:[RCTConvert NSNumber:product[@"price"]]];
+                [ecommerceProduct setQuantity:[RCTConvert NSNumber:product[@"quantity"]]];
+                if ([product objectForKey:@"couponCode"]) {
+                    [ecommerceProduct setCouponCode:[RCTConvert NSString:product[@"couponCode"]]];
+                }
+                [builder addProduct:ecommerceProduct];
+            }
+        }
+
+        if (builder == nil) {
+            continue;
+        }
+
+        NSDictionary *dimensionIndexValues = [RCTConvert NSDictionary:hit[@"customDimensions"]];
+        for (NSString *dimensionIndex in dimensionIndexValues)
+            [builder set:[dimensionIndexValues objectForKey:dimensionIndex] forKey:[GAIFields customDimensionForIndex:[dimensionIndex intValue]]];
+
+        [tracker send:[builder build]];
+    }
+}
+
 RCT_EXPORT_METHOD(setSamplingRate:(NSString *)trackerId sampleRate:(nonnull NSNumber *)sampleRate)
 {
     id<GAITracker> tracker = [[GAI sharedInstance] trackerWithTrackingId:trackerId];
     [tracker set:kGAISampleRate value:[sampleRate stringValue]];
 }
 
+RCT_EXPORT_METHOD(setRateLimit:(NSString *)trackerId hitsPerSecond:(nonnull NSNumber *)hitsPerSecond burstSize:(nonnull NSNumber *)burstSize)
+{
+    // Rate limiting is only implemented in the Android bridge
+}
+
 RCT_EXPORT_METHOD(setDryRun:(BOOL)enabled)
 {
     [GAI sharedInstance].dryRun = enabled;
@@ -282,6 +493,41 @@ RCT_EXPORT_METHOD(setDispatchInterval:(NSInteger)intervalInSeconds)
     [GAI sharedInstance].dispatchInterval = intervalInSeconds;
 }
 
+RCT_EXPORT_METHOD(dispatchNow:(RCTPromiseResolveBlock)resolve
+                  rejecter:(RCTPromiseRejectBlock)reject)
+{
+    [[GAI sharedInstance] dispatchWithCompletionHandler:^(GAIDispatchResult result) {
+        resolve(@YES);
+    }];
+}
+
+RCT_EXPORT_METHOD(setHitQueueOverflowPolicy:(NSString *)overflowPolicy)
+{
+    // GAI already queues hits off the calling thread, nothing to configure
+}
+
+RCT_EXPORT_METHOD(setHitSink:(NSDictionary *)options)
+{
+    // Local hit sinks are only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(setHitCoalescingWindow:(nonnull NSNumber *)windowMillis mode:(NSString *)mode)
+{
+    // Hit coalescing is only implemented by the Android bridge
+}
+
+RCT_EXPORT_METHOD(getBridgeMetrics:(RCTPromiseResolveBlock)resolve
+                  rejecter:(RCTPromiseRejectBlock)reject)
+{
+    // Metrics are only collected by the Android bridge
+    resolve(@{});
+}
+
+RCT_EXPORT_METHOD(setMetricsReportInterval:(nonnull NSNumber *)intervalInSeconds)
+{
+    // Metrics are only collected by the Android bridge
+}
+
 RCT_EXPORT_METHOD(setTrackUncaughtExceptions:(NSString *)trackerId enabled:(BOOL)enabled)
 {
     [GAI sharedInstance].trackUncaughtExceptions = enabled;
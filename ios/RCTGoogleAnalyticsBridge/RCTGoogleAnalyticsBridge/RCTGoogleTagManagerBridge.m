@@ -18,6 +18,7 @@ NSString *const E_CONTAINER_ALREADY_OPEN = @"E_CONTAINER_ALREADY_OPEN";
 NSString *const E_ONGOING_OPEN_OPERATION = @"E_ONGOING_OPEN_OPERATION";
 NSString *const E_CONTAINER_NOT_OPENED = @"E_CONTAINER_NOT_OPENED";
 NSString *const E_PUSH_EVENT_FAILED = @"E_PUSH_EVENT_FAILED";
+NSString *const E_INVALID_VALUE_TYPE = @"E_INVALID_VALUE_TYPE";
 
 
 RCT_EXPORT_METHOD(openContainerWithId:(NSString *)containerId
@@ -78,6 +79,31 @@ RCT_EXPORT_METHOD(doubleForKey:(NSString*)key
     }
 }
 
+RCT_EXPORT_METHOD(getValuesForKeys:(NSDictionary*)keyTypes
+                  resolver:(RCTPromiseResolveBlock)resolve
+                  rejecter:(RCTPromiseRejectBlock)reject){
+    if (self.container == nil) {
+        reject(E_CONTAINER_NOT_OPENED, nil, RCTErrorWithMessage(@"The container has not been opened. You must call openContainerWithId(..)"));
+        return;
+    }
+
+    NSMutableDictionary *values = [NSMutableDictionary dictionaryWithCapacity:[keyTypes count]];
+    for (NSString *key in keyTypes) {
+        NSString *type = keyTypes[key];
+        if ([type isEqualToString:@"boolean"]) {
+            values[key] = [NSNumber numberWithBool:[self.container booleanForKey:key]];
+        } else if ([type isEqualToString:@"string"]) {
+            values[key] = [self.container stringForKey:key];
+        } else if ([type isEqualToString:@"double"]) {
+            values[key] = [NSNumber numberWithDouble:[self.container doubleForKey:key]];
+        } else {
+            reject(E_INVALID_VALUE_TYPE, nil, RCTErrorWithMessage([NSString stringWithFormat:@"Unknown type %@ for key %@. Use boolean, string or double.", type, key]));
+            return;
+        }
+    }
+    resolve(values);
+}
+
 RCT_EXPORT_METHOD(pushDataLayerEvent:(NSDictionary*)dictionary
                   resolver:(RCTPromiseResolveBlock)resolve
                   rejecter:(RCTPromiseRejectBlock)reject){
@@ -94,6 +120,28 @@ RCT_EXPORT_METHOD(pushDataLayerEvent:(NSDictionary*)dictionary
     }
 }
 
+RCT_EXPORT_METHOD(pushDataLayerEvents:(NSArray*)dictionaries
+                  resolver:(RCTPromiseResolveBlock)resolve
+                  rejecter:(RCTPromiseRejectBlock)reject){
+    if (self.container == nil) {
+        reject(E_CONTAINER_NOT_OPENED, nil, RCTErrorWithMessage(@"The container has not been opened. You must call openContainerWithId(..)"));
+        return;
+    }
+
+    for (NSUInteger index = 0; index < [dictionaries count]; index++) {
+        if (![[dictionaries[index] allKeys] containsObject:@"event"]) {
+            reject(E_PUSH_EVENT_FAILED, nil, RCTErrorWithMessage([NSString stringWithFormat:@"Validation error, data at index %lu must have a key \"event\" with valid event name", (unsigned long)index]));
+            return;
+        }
+    }
+
+    for (NSDictionary *dictionary in dictionaries) {
+        [[TAGManager instance].dataLayer push:dictionary];
+    }
+    [[TAGManager instance] dispatch];
+    resolve(@YES);
+}
+
 - (void)containerAvailable:(TAGContainer *)container {
     dispatch_async(_methodQueue, ^{
         self.container = container;
@@ -23,6 +23,81 @@ export class GoogleAnalyticsSettings {
     GoogleAnalyticsBridge.setDispatchInterval(intervalInSeconds);
   }
 
+  /**
+   * Sends every hit tracked so far right away instead of waiting for the
+   * next scheduled dispatch.
+   * @returns {Promise} resolved once the dispatch has been started
+   */
+  static dispatchNow() {
+    return GoogleAnalyticsBridge.dispatchNow();
+  }
+
+  /**
+   * Sets what happens when hits are tracked faster than they can be handed
+   * to Google Analytics: 'dropOldest' (default), 'dropNewest' or 'block'.
+   * Only used on Android, iOS already queues hits off the calling thread.
+   * @param {String} overflowPolicy
+   */
+  static setHitQueueOverflowPolicy(overflowPolicy) {
+    GoogleAnalyticsBridge.setHitQueueOverflowPolicy(overflowPolicy);
+  }
+
+  /**
+   * Sends identical hits tracked within windowMillis of each other only once.
+   * With mode 'merge', events with a value are held for the window and sent
+   * once with the values added up. Pass 0 to turn coalescing off.
+   * Only used on Android.
+   * @param {Number} windowMillis
+   * @param {String} mode 'drop' (default) or 'merge'
+   */
+  static setHitCoalescingWindow(windowMillis, mode = 'drop') {
+    GoogleAnalyticsBridge.setHitCoalescingWindow(windowMillis, mode);
+  }
+
+  /**
+   * Returns call counts and latency histograms for the native bridge,
+   * plus the hit queue counters. Only collected on Android, iOS resolves
+   * with an empty object.
+   * @returns {Promise<Object>}
+   */
+  static getBridgeMetrics() {
+    return GoogleAnalyticsBridge.getBridgeMetrics();
+  }
+
+  /**
+   * Emits the bridge metrics as a 'GoogleAnalyticsBridgeMetrics' device event
+   * every intervalInSeconds. Pass 0 to stop. Only used on Android.
+   * @param {Number} intervalInSeconds
+   */
+  static setMetricsReportInterval(intervalInSeconds) {
+    GoogleAnalyticsBridge.setMetricsReportInterval(intervalInSeconds);
+  }
+
+  /**
+   * Makes groupId an alias for several trackers. A GoogleAnalyticsTracker
+   * created with the group id builds each hit once and sends it to every
+   * tracker in the group. Pass an empty array to remove the group.
+   * Only used on Android.
+   * @param {String} groupId Must not be a tracking id itself
+   * @param {Array} trackerIds
+   */
+  static registerTrackerGroup(groupId, trackerIds = []) {
+    GoogleAnalyticsBridge.registerTrackerGroup(groupId, trackerIds);
+  }
+
+  /**
+   * Sends hits to a local stand-in collector instead of Google Analytics, as
+   * Measurement Protocol payloads one per line. Meant for load testing.
+   * Only used on Android.
+   * @param {Object} options {type: 'file', path}, {type: 'socket', host, port},
+   * {type: 'batch', endpoint, gzip, maxDelaySeconds} to upload to the Measurement
+   * Protocol /batch endpoint directly, or {type: 'google'} to send hits to
+   * Google Analytics again
+   */
+  static setHitSink(options = { type: 'google' }) {
+    GoogleAnalyticsBridge.setHitSink(options);
+  }
+
   /**
    * Sets if the tracker should have dry run enabled.
    * If dry run is enabled, no analytics data will be sent to your tracker.
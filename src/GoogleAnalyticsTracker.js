@@ -1,4 +1,6 @@
+import { Platform } from 'react-native';
 import { GoogleAnalyticsBridge } from './NativeBridges';
+import { canEncodeHits, encodeHits } from './HitEncoder';
 
 /**
  * Custom dimensions accept only strings and numbers.
@@ -23,6 +25,26 @@ export class GoogleAnalyticsTracker {
   constructor(trackerId, customDimensionsFieldsIndexMap) {
     this.id = trackerId;
     this.customDimensionsFieldsIndexMap = customDimensionsFieldsIndexMap;
+
+    if (customDimensionsFieldsIndexMap) {
+      this.customDimensionsFields = Object.keys(customDimensionsFieldsIndexMap);
+      const dimensionIndices = this.customDimensionsFields
+        .map(field => Number(customDimensionsFieldsIndexMap[field]));
+      GoogleAnalyticsBridge.registerDimensionSchema(trackerId, dimensionIndices);
+    }
+  }
+
+  /**
+   * Transforms customDimensions pairs {field: value} to an array of values
+   * in the order of the schema registered in the constructor. Native code maps
+   * the positions straight onto dimension indices.
+   * @param customDimensions {Object}
+   * @returns {Array}
+   */
+  transformCustomDimensionsFieldsToArray(customDimensions) {
+    return this.customDimensionsFields.map(field =>
+      isValidCustomDimension(customDimensions[field]) ? customDimensions[field] : null
+    );
   }
 
   /**
@@ -48,6 +70,49 @@ export class GoogleAnalyticsTracker {
     return customDimensions;
   }
 
+  /**
+   * Keys the custom dimensions of batch hits by index.
+   * @param hits {Array}
+   * @returns {Array}
+   */
+  formatBatchHits(hits) {
+    return hits.map(hit => {
+      if (hit.customDimensions) {
+        return {
+          ...hit,
+          customDimensions: this.transformCustomDimensionsFieldsToIndexes(hit.customDimensions)
+        };
+      }
+      return hit;
+    });
+  }
+
+  /**
+   * Track several hits with a single call to the native bridge.
+   * Each hit has a type (screen, event, timing, exception, social or purchase)
+   * and the same values as the corresponding track method, e.g.
+   * {type: 'event', category: 'Video', action: 'Play', label: 'Intro', value: 1}
+   * @param  {Array} hits An array of hit objects
+   */
+  trackBatch(hits = []) {
+    GoogleAnalyticsBridge.trackBatch(this.id, this.formatBatchHits(hits));
+  }
+
+  /**
+   * Same as trackBatch, but the hits cross the bridge packed into a single
+   * string, which is cheaper to pass and decode than an array of maps.
+   * Batches with purchases, and all batches on iOS, fall back to trackBatch.
+   * @param  {Array} hits An array of hit objects
+   */
+  trackEncodedBatch(hits = []) {
+    if (Platform.OS !== 'android' || !canEncodeHits(hits)) {
+      this.trackBatch(hits);
+      return;
+    }
+
+    GoogleAnalyticsBridge.trackEncodedBatch(this.id, encodeHits(this.formatBatchHits(hits)));
+  }
+
   /**
    * Track the current screen/view
    * @param  {String} screenName The name of the current screen
@@ -72,6 +137,11 @@ export class GoogleAnalyticsTracker {
    * @param  {Object} customDimensionValues An object containing custom dimension key/value pairs
    */
   trackScreenViewWithCustomDimensionValues(screenName, customDimensionValues) {
+    if (this.customDimensionsFields) {
+      const dimensionValues = this.transformCustomDimensionsFieldsToArray(customDimensionValues);
+      GoogleAnalyticsBridge.trackScreenViewWithCustomDimensionArray(this.id, screenName, dimensionValues);
+      return;
+    }
     const formattedCustomDimensions = this.transformCustomDimensionsFieldsToIndexes(customDimensionValues);
     GoogleAnalyticsBridge.trackScreenViewWithCustomDimensionValues(this.id, screenName, formattedCustomDimensions);
   }
@@ -84,6 +154,11 @@ export class GoogleAnalyticsTracker {
    * @param  {Object} customDimensionValues An object containing custom dimension key/value pairs
    */
   trackEventWithCustomDimensionValues(category, action, optionalValues = {}, customDimensionValues) {
+    if (this.customDimensionsFields) {
+      const dimensionValues = this.transformCustomDimensionsFieldsToArray(customDimensionValues);
+      GoogleAnalyticsBridge.trackEventWithCustomDimensionArray(this.id, category, action, optionalValues, dimensionValues);
+      return;
+    }
     const formattedCustomDimensions = this.transformCustomDimensionsFieldsToIndexes(customDimensionValues);
     GoogleAnalyticsBridge.trackEventWithCustomDimensionValues(this.id, category, action, optionalValues, formattedCustomDimensions);
   }
@@ -98,6 +173,70 @@ export class GoogleAnalyticsTracker {
     GoogleAnalyticsBridge.trackTiming(this.id, category, value, optionalValues);
   }
 
+  /**
+   * Start a native timer. The duration is measured on the native side when
+   * endTiming is called with the same key, so no JS timer is involved.
+   * @param  {String} key Identifies the timer
+   */
+  startTiming(key) {
+    GoogleAnalyticsBridge.startTiming(key);
+  }
+
+  /**
+   * Stop a timer started with startTiming and track its duration
+   * @param  {String} key            The key passed to startTiming
+   * @param  {String} category       The timing category
+   * @param  {Object} optionalValues An object containing optional name and label
+   */
+  endTiming(key, category, optionalValues = {}) {
+    GoogleAnalyticsBridge.endTiming(this.id, key, category, optionalValues);
+  }
+
+  /**
+   * Add to a counter of the current screen. Counters are sent as one summary
+   * event each when the next screen is tracked or the app goes to the background.
+   * Only used on Android.
+   * @param  {String} name   The summary event action
+   * @param  {Number} amount Added to the counter
+   */
+  incrementScreenCounter(name, amount = 1) {
+    GoogleAnalyticsBridge.incrementScreenCounter(this.id, name, amount);
+  }
+
+  /**
+   * Like incrementScreenCounter, but keeps the highest value, e.g. the scroll depth.
+   * Only used on Android.
+   * @param  {String} name  The summary event action
+   * @param  {Number} value
+   */
+  updateScreenMaximum(name, value) {
+    GoogleAnalyticsBridge.updateScreenMaximum(this.id, name, value);
+  }
+
+  /**
+   * Record that an item was shown in a list on the current screen, at most once.
+   * Sent as one summary event per list with the item ids as label.
+   * Only used on Android.
+   * @param  {String} listName The summary event action
+   * @param  {String} itemId
+   */
+  addScreenImpression(listName, itemId) {
+    GoogleAnalyticsBridge.addScreenImpression(this.id, listName, String(itemId));
+  }
+
+  /**
+   * Track product list impressions. This uses the Enhanced Ecommerce GA feature.
+   * Impressions are collected natively and sent packed into a few hits, each
+   * product at most once per list and screen.
+   * Only used on Android.
+   * @param  {String} listName The product list, e.g. 'Search Results'
+   * @param  {Array}  products Objects with an id and optional name, brand,
+   *                           category, variant, price and position
+   */
+  trackImpressions(listName, products = []) {
+    GoogleAnalyticsBridge.trackImpressions(this.id, listName, products);
+  }
+
   /**
    * Track a purchase event. This uses the Enhanced Ecommerce GA feature.
    * @param  {Object} product       An object with product values
@@ -150,6 +289,25 @@ export class GoogleAnalyticsTracker {
     GoogleAnalyticsBridge.setUser(this.id, userId);
   }
 
+  /**
+   * Sets custom dimensions and fields that are sent with every following hit
+   * from this tracker, until replaced or cleared. Saves sending the same
+   * values with each call.
+   * @param {Object} customDimensionValues An object containing custom dimension key/value pairs
+   * @param {Object} fields An object of Measurement Protocol parameters and values, e.g. {'&ul': 'en-us'}
+   */
+  setTrackerContext(customDimensionValues = {}, fields = {}) {
+    const formattedCustomDimensions = this.transformCustomDimensionsFieldsToIndexes(customDimensionValues);
+    GoogleAnalyticsBridge.setTrackerContext(this.id, formattedCustomDimensions, fields);
+  }
+
+  /**
+   * Removes the custom dimensions and fields set with setTrackerContext.
+   */
+  clearTrackerContext() {
+    GoogleAnalyticsBridge.clearTrackerContext(this.id);
+  }
+
   /**
    * Sets if IDFA (identifier for advertisers) collection should be enabled
    * @param  {Boolean} enabled Defaults to true
@@ -209,4 +367,15 @@ export class GoogleAnalyticsTracker {
   setSamplingRate(sampleRatio) {
     GoogleAnalyticsBridge.setSamplingRate(this.id, sampleRatio);
   }
+
+  /**
+   * Limits how many hits per second are sent for each event or timing
+   * category (or hit type, for hits without a category). Hits over the limit
+   * are dropped before they are built. Android only.
+   * @param {Number} hitsPerSecond Average hits per second, 0 removes the limit
+   * @param {Number} burstSize Number of hits allowed in a burst
+   */
+  setRateLimit(hitsPerSecond, burstSize = 10) {
+    GoogleAnalyticsBridge.setRateLimit(this.id, hitsPerSecond, burstSize);
+  }
 }
@@ -33,6 +33,16 @@ export class GoogleTagManager {
     return GoogleTagManagerBridge.doubleForKey(key);
   }
 
+  /**
+   * Retrieves several values from the opened container with one call.
+   * @param {Object} keyTypes An object of keys and their types, one of 'boolean', 'string' or 'double'
+   *         example: {showBanner: 'boolean', bannerText: 'string'}
+   * @returns {Promise} Resolves with an object of keys and values
+   */
+  static valuesForKeys(keyTypes){
+    return GoogleTagManagerBridge.getValuesForKeys(keyTypes);
+  }
+
   /**
    * push a datalayer event for Google Analytics through Google Tag Manager.
    * @param {String} eventName
@@ -43,4 +53,13 @@ export class GoogleTagManager {
   static pushDataLayerEvent(dictionary = {}){
     GoogleTagManagerBridge.pushDataLayerEvent(dictionary);
   }
+
+  /**
+   * push several datalayer events with one call, e.g. a burst of funnel steps.
+   * Nothing is pushed unless every event is valid.
+   * @param {Array} dictionaries An array of Map<String, Object>, each with at least the key "event"
+   */
+  static pushDataLayerEvents(dictionaries = []){
+    return GoogleTagManagerBridge.pushDataLayerEvents(dictionaries);
+  }
 }
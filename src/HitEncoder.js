@@ -0,0 +1,178 @@
+/**
+ * Packs trackBatch hits into the compact format read by the native HitDecoder,
+ * so a whole batch crosses the bridge as one base64 string.
+ * Field and hit type ids must match HitDecoder.java.
+ */
+
+const VERSION = 1;
+
+const HIT_TYPES = {
+  screen: 1,
+  event: 2,
+  timing: 3,
+  exception: 4,
+  social: 5
+};
+
+const FIELD_END = 0;
+const FIELD_CUSTOM_DIMENSION = 11;
+
+// Per hit type, the hit keys written as strings or numbers
+const STRING_FIELDS = {
+  screen: { screenName: 1 },
+  event: { category: 2, action: 3, label: 4 },
+  timing: { category: 2, label: 4, name: 6 },
+  exception: { error: 7 },
+  social: { network: 9, action: 3, targetUrl: 10 }
+};
+
+const NUMBER_FIELDS = {
+  event: { value: 5 },
+  timing: { value: 5 },
+  exception: { fatal: 8 }
+};
+
+const BASE64 = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+function writeVarint(bytes, value) {
+  if (!Number.isSafeInteger(value) || value < 0) {
+    throw new RangeError(`Cannot encode ${value} as a varint`);
+  }
+
+  // Arithmetic rather than bitwise, values may not fit in 32 bits
+  while (value >= 0x80) {
+    bytes.push((value % 0x80) + 0x80);
+    value = Math.floor(value / 0x80);
+  }
+  bytes.push(value);
+}
+
+function writeZigzag(bytes, value) {
+  writeVarint(bytes, value >= 0 ? value * 2 : -value * 2 - 1);
+}
+
+function writeUtf8(bytes, string) {
+  for (let i = 0; i < string.length; i++) {
+    let code = string.charCodeAt(i);
+
+    if (code >= 0xd800 && code < 0xdc00 && i + 1 < string.length) {
+      const low = string.charCodeAt(i + 1);
+      if (low >= 0xdc00 && low < 0xe000) {
+        code = 0x10000 + ((code - 0xd800) << 10) + (low - 0xdc00);
+        i++;
+      }
+    }
+
+    if (code < 0x80) {
+      bytes.push(code);
+    } else if (code < 0x800) {
+      bytes.push(0xc0 | (code >> 6), 0x80 | (code & 0x3f));
+    } else if (code < 0x10000) {
+      bytes.push(0xe0 | (code >> 12), 0x80 | ((code >> 6) & 0x3f), 0x80 | (code & 0x3f));
+    } else {
+      bytes.push(
+        0xf0 | (code >> 18),
+        0x80 | ((code >> 12) & 0x3f),
+        0x80 | ((code >> 6) & 0x3f),
+        0x80 | (code & 0x3f)
+      );
+    }
+  }
+}
+
+function toBase64(bytes) {
+  let result = '';
+
+  for (let i = 0; i < bytes.length; i += 3) {
+    const chunk = (bytes[i] << 16) | ((bytes[i + 1] || 0) << 8) | (bytes[i + 2] || 0);
+    result += BASE64[(chunk >> 18) & 0x3f] + BASE64[(chunk >> 12) & 0x3f];
+    result += i + 1 < bytes.length ? BASE64[(chunk >> 6) & 0x3f] : '=';
+    result += i + 2 < bytes.length ? BASE64[chunk & 0x3f] : '=';
+  }
+
+  return result;
+}
+
+/**
+ * Whether every hit has a type the compact format supports.
+ * Purchases carry nested products and go through trackBatch.
+ * @param {Array} hits
+ * @returns {boolean}
+ */
+export function canEncodeHits(hits) {
+  return hits.every(hit => Object.prototype.hasOwnProperty.call(HIT_TYPES, hit.type));
+}
+
+/**
+ * Encodes hits whose custom dimensions are already keyed by index.
+ * Strings repeated across the batch are written once.
+ * Throws if a number field is not finite or a dimension index is not a number.
+ * @param {Array} hits
+ * @returns {String} base64
+ */
+export function encodeHits(hits) {
+  const strings = [];
+  // No prototype, so strings like "constructor" are not found on it
+  const stringIndices = Object.create(null);
+  const body = [];
+
+  const writeString = (value) => {
+    const string = String(value);
+    let index = stringIndices[string];
+    if (index === undefined) {
+      index = strings.length;
+      stringIndices[string] = index;
+      strings.push(string);
+    }
+    writeVarint(body, index);
+  };
+
+  writeVarint(body, hits.length);
+  hits.forEach(hit => {
+    writeVarint(body, HIT_TYPES[hit.type]);
+
+    const stringFields = STRING_FIELDS[hit.type] || {};
+    Object.keys(stringFields).forEach(key => {
+      if (hit[key] !== undefined && hit[key] !== null) {
+        writeVarint(body, stringFields[key]);
+        writeString(hit[key]);
+      }
+    });
+
+    const numberFields = NUMBER_FIELDS[hit.type] || {};
+    Object.keys(numberFields).forEach(key => {
+      if (hit[key] !== undefined && hit[key] !== null) {
+        const number = Number(hit[key]);
+        if (!Number.isFinite(number)) {
+          throw new TypeError(`Hit ${key} must be a finite number, got ${hit[key]}`);
+        }
+        writeVarint(body, numberFields[key]);
+        writeZigzag(body, Math.round(number));
+      }
+    });
+
+    const customDimensions = hit.customDimensions || {};
+    Object.keys(customDimensions).forEach(index => {
+      const value = customDimensions[index];
+      if (typeof value === 'string' || typeof value === 'number') {
+        writeVarint(body, FIELD_CUSTOM_DIMENSION);
+        writeVarint(body, Number(index));
+        writeString(value);
+      }
+    });
+
+    writeVarint(body, FIELD_END);
+  });
+
+  const bytes = [];
+  writeVarint(bytes, VERSION);
+  writeVarint(bytes, strings.length);
+  strings.forEach(string => {
+    const encoded = [];
+    writeUtf8(encoded, string);
+    writeVarint(bytes, encoded.length);
+    Array.prototype.push.apply(bytes, encoded);
+  });
+
+  return toBase64(bytes.concat(body));
+}